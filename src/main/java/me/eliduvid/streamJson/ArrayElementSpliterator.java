@@ -0,0 +1,366 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Spliterator over descendants of one array of the input. If input is fully addressable, spliterator is split
+ * between elements of the array, so they may be parsed in parallel, each part with its own {@link JsonStream}.<br>
+ * Boundaries of elements are found without parsing the array sequentially. Input after the start of the array
+ * is cut into pieces, and each piece is scanned in parallel for quotes and brackets under both guesses:
+ * that it starts outside of a string, and that it starts inside of one. Quote parity of previous pieces tells
+ * which guess was right, so string state and depth at the start of every piece are known.
+ * Second parallel scan then finds commas that separate elements of the array, and its closing bracket.
+ * If input is not addressable, the array is too small, or the scans don't add up
+ * (which only happens for invalid input), array is parsed sequentially.
+ */
+final class ArrayElementSpliterator implements Spliterator<JsonStream.Node> {
+    private static final int MIN_PIECE_SIZE = 1 << 20;
+    private static final int PIECES_PER_THREAD = 8;
+
+    private final @Nullable ChunkedBytes bytes;
+    private final @Nullable Utf8ChunkedInput input;
+    private final @NotNull JsonStream whole;
+    private final @NotNull List<String> path;
+    private @Nullable List<Part> parts = null;
+    private boolean sequential = false;
+    private int nextPart = 0;
+    private int endPart = 0;
+    private @Nullable JsonStream current = null;
+
+    /**
+     * @param bytes whole input, or {@code null} if it can only be read sequentially
+     * @param input input of {@code whole}, or {@code null} if it can only be read sequentially
+     * @param whole stream of the whole input, that is used to find the array and as a fallback
+     * @param path  keys of objects and indexes of arrays leading from the root to the array
+     */
+    ArrayElementSpliterator(@Nullable ChunkedBytes bytes, @Nullable Utf8ChunkedInput input, @NotNull JsonStream whole,
+                            @NotNull List<String> path) {
+        this.bytes = bytes;
+        this.input = input;
+        this.whole = whole;
+        this.path = path;
+    }
+
+    private ArrayElementSpliterator(@NotNull ArrayElementSpliterator parent, int nextPart, int endPart) {
+        this(parent.bytes, parent.input, parent.whole, parent.path);
+        this.parts = parent.parts;
+        this.nextPart = nextPart;
+        this.endPart = endPart;
+    }
+
+    private void prepare() {
+        if (parts != null || sequential) {
+            return;
+        }
+        if (!whole.enterArray(path)) {
+            parts = List.of();
+            return;
+        }
+        parts = bytes == null || input == null ? null : findParts(bytes, input.offset());
+        if (parts == null) {
+            sequential = true;
+        } else {
+            endPart = parts.size();
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(@NotNull Consumer<? super JsonStream.Node> action) {
+        prepare();
+        if (sequential) {
+            return whole.tryAdvance(action);
+        }
+        while (true) {
+            if (current == null) {
+                if (nextPart == endPart) {
+                    return false;
+                }
+                Part part = Objects.requireNonNull(parts).get(nextPart++);
+                current = whole.arrayPart(new Utf8ChunkedInput(Objects.requireNonNull(bytes), part.start, part.end, null),
+                        part.firstIndex);
+            }
+            if (current.tryAdvance(action)) {
+                return true;
+            }
+            current = null;
+        }
+    }
+
+    /**
+     * Splits remaining parts in half. Part that is being parsed can't be split.
+     */
+    @Override
+    public @Nullable Spliterator<JsonStream.Node> trySplit() {
+        prepare();
+        if (sequential || current != null || endPart - nextPart < 2) {
+            return null;
+        }
+        int middle = (nextPart + endPart) >>> 1;
+        var prefix = new ArrayElementSpliterator(this, nextPart, middle);
+        nextPart = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (sequential) {
+            return whole.estimateSize();
+        }
+        if (parts == null) {
+            return bytes == null ? whole.estimateSize() : bytes.size();
+        }
+        if (nextPart == endPart) {
+            return current == null ? 0 : current.estimateSize();
+        }
+        return parts.get(endPart - 1).end - parts.get(nextPart).start;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.NONNULL | Spliterator.ORDERED;
+    }
+
+    /**
+     * Part of the array from {@code start} right after {@code [} or {@code ,},
+     * up to {@code end} at {@code ,} or {@code ]} exclusive.
+     */
+    private record Part(long start, long end, int firstIndex) {
+    }
+
+    private static @Nullable List<Part> findParts(@NotNull ChunkedBytes bytes, long arrayStart) {
+        long length = bytes.size() - arrayStart;
+        int pieceCount = (int) Math.min(length / MIN_PIECE_SIZE,
+                (long) ForkJoinPool.getCommonPoolParallelism() * PIECES_PER_THREAD);
+        if (pieceCount < 2) {
+            return null;
+        }
+        long[] starts = new long[pieceCount + 1];
+        starts[0] = arrayStart;
+        starts[pieceCount] = bytes.size();
+        for (int i = 1; i < pieceCount; i++) {
+            starts[i] = afterBackslashes(bytes, arrayStart + length * i / pieceCount);
+            if (starts[i] <= starts[i - 1]) {
+                return null;
+            }
+        }
+
+        QuoteScan[] quoteScans = IntStream.range(0, pieceCount).parallel()
+                .mapToObj(i -> new QuoteScan().run(bytes, starts[i], starts[i + 1]))
+                .toArray(QuoteScan[]::new);
+        boolean[] startsInString = new boolean[pieceCount];
+        long[] startDepths = new long[pieceCount];
+        boolean inString = false;
+        long depth = 0;
+        int last = -1;
+        for (int i = 0; i < pieceCount; i++) {
+            startsInString[i] = inString;
+            startDepths[i] = depth;
+            QuoteScan scan = quoteScans[i];
+            if (depth + (inString ? scan.minDepthInString : scan.minDepth) < 0) {
+                last = i;
+                break;
+            }
+            depth += inString ? scan.depthInString : scan.depth;
+            inString ^= scan.oddQuotes;
+        }
+        if (last == -1) {
+            return null;
+        }
+
+        int lastPiece = last;
+        CommaScan[] commaScans = IntStream.rangeClosed(0, lastPiece).parallel()
+                .mapToObj(i -> new CommaScan(startsInString[i], startDepths[i]).run(bytes, starts[i], starts[i + 1]))
+                .toArray(CommaScan[]::new);
+        if (commaScans[lastPiece].close == -1) {
+            return null;
+        }
+        var parts = new ArrayList<Part>();
+        long start = arrayStart;
+        int firstIndex = 0;
+        int commasBefore = 0;
+        for (int i = 0; i <= lastPiece; i++) {
+            CommaScan scan = commaScans[i];
+            if (i > 0 && scan.firstComma != -1) {
+                parts.add(new Part(start, scan.firstComma, firstIndex));
+                start = scan.firstComma + 1;
+                firstIndex = commasBefore + 1;
+            }
+            commasBefore += scan.commas;
+        }
+        parts.add(new Part(start, commaScans[lastPiece].close, firstIndex));
+        return parts;
+    }
+
+    /**
+     * Moves offset forward, so the byte before it is not {@code \}. Then byte at the offset is not escaped.
+     */
+    private static long afterBackslashes(@NotNull ChunkedBytes bytes, long offset) {
+        while (offset < bytes.size() && bytes.get(offset - 1) == '\\') {
+            offset++;
+        }
+        return offset;
+    }
+
+    /**
+     * Scan of a range of the input, that goes over it chunk by chunk.
+     */
+    private abstract static class Scan<T extends Scan<T>> {
+        /**
+         * Whether the first byte of the next segment is escaped.
+         */
+        boolean escaped = false;
+
+        @SuppressWarnings("unchecked")
+        final @NotNull T run(@NotNull ChunkedBytes bytes, long from, long to) {
+            while (from < to) {
+                int chunk = (int) (from / ChunkedBytes.CHUNK_SIZE);
+                long chunkStart = (long) chunk * ChunkedBytes.CHUNK_SIZE;
+                ByteBuffer buffer = bytes.chunk(chunk);
+                int end = (int) Math.min(buffer.limit(), to - chunkStart);
+                int i = (int) (from - chunkStart);
+                if (escaped && i < end) {
+                    escaped = false;
+                    i++;
+                }
+                if (!scan(buffer, i, end, chunkStart)) {
+                    break;
+                }
+                from = chunkStart + end;
+            }
+            return (T) this;
+        }
+
+        /**
+         * @return {@code false} to stop the scan
+         */
+        abstract boolean scan(@NotNull ByteBuffer buffer, int i, int end, long chunkStart);
+    }
+
+    /**
+     * Depths of brackets for both guesses of string state at the start of the piece.
+     * Backslashes only appear inside of strings in valid JSON, so escapes don't depend on the guess.
+     */
+    private static final class QuoteScan extends Scan<QuoteScan> {
+        boolean oddQuotes = false;
+        long depth = 0;
+        long minDepth = 0;
+        long depthInString = 0;
+        long minDepthInString = 0;
+
+        @Override
+        boolean scan(@NotNull ByteBuffer buffer, int i, int end, long chunkStart) {
+            while (true) {
+                while (end - i >= Long.BYTES) {
+                    long found = Swar.quotesBackslashesOrBrackets(buffer.getLong(i));
+                    if (found != 0) {
+                        i += Swar.firstByte(found);
+                        break;
+                    }
+                    i += Long.BYTES;
+                }
+                if (i == end) {
+                    return true;
+                }
+                switch (buffer.get(i++)) {
+                    case '\\' -> {
+                        if (i == end) {
+                            escaped = true;
+                            return true;
+                        }
+                        i++;
+                    }
+                    case '"' -> oddQuotes = !oddQuotes;
+                    case '{', '[' -> {
+                        if (oddQuotes) {
+                            depthInString++;
+                        } else {
+                            depth++;
+                        }
+                    }
+                    case '}', ']' -> {
+                        if (oddQuotes) {
+                            minDepthInString = Math.min(minDepthInString, --depthInString);
+                        } else {
+                            minDepth = Math.min(minDepth, --depth);
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Commas directly inside of the array and its closing bracket, with known state at the start of the piece.
+     */
+    private static final class CommaScan extends Scan<CommaScan> {
+        private boolean inString;
+        private long depth;
+        long firstComma = -1;
+        int commas = 0;
+        long close = -1;
+
+        private CommaScan(boolean inString, long depth) {
+            this.inString = inString;
+            this.depth = depth;
+        }
+
+        @Override
+        boolean scan(@NotNull ByteBuffer buffer, int i, int end, long chunkStart) {
+            while (true) {
+                while (end - i >= Long.BYTES) {
+                    long word = buffer.getLong(i);
+                    long found = inString ? Swar.quotesOrBackslashes(word) : Swar.quotesBracketsOrCommas(word);
+                    if (found != 0) {
+                        i += Swar.firstByte(found);
+                        break;
+                    }
+                    i += Long.BYTES;
+                }
+                if (i == end) {
+                    return true;
+                }
+                int b = buffer.get(i++);
+                if (inString) {
+                    if (b == '"') {
+                        inString = false;
+                    } else if (b == '\\') {
+                        if (i == end) {
+                            escaped = true;
+                            return true;
+                        }
+                        i++;
+                    }
+                    continue;
+                }
+                switch (b) {
+                    case '"' -> inString = true;
+                    case ',' -> {
+                        if (depth == 0) {
+                            if (firstComma == -1) {
+                                firstComma = chunkStart + i - 1;
+                            }
+                            commas++;
+                        }
+                    }
+                    case '{', '[' -> depth++;
+                    case '}', ']' -> {
+                        if (--depth < 0) {
+                            close = chunkStart + i - 1;
+                            return false;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+    }
+}
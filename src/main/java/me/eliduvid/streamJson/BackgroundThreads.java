@@ -0,0 +1,31 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Threads for background work of streams, like parsing for a publisher, reading ahead of the parser
+ * or building structural index.
+ */
+final class BackgroundThreads {
+    /**
+     * Virtual thread per task if the runtime has them, otherwise cached daemon platform threads.
+     */
+    static final @NotNull Executor EXECUTOR = executor();
+
+    private BackgroundThreads() {
+    }
+
+    private static @NotNull Executor executor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                var thread = new Thread(task, "json-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * Fully addressable input held as a sequence of chunks, because single {@link ByteBuffer} can't be larger than 2 GB.
+ * Chunk {@code i} starts at {@code i * CHUNK_SIZE}.
+ * Chunks are in {@link ByteOrder#LITTLE_ENDIAN} order, as {@link Utf8Input} expects.
+ */
+final class ChunkedBytes {
+    static final int CHUNK_SIZE = 1 << 30;
+
+    private final @NotNull ByteBuffer @NotNull [] chunks;
+    private final long size;
+
+    private ChunkedBytes(@NotNull ByteBuffer @NotNull [] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * Maps whole file into memory. Mapping stays valid after the channel is closed,
+     * so no file handle is held by the result.
+     */
+    static @NotNull ChunkedBytes map(@NotNull Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            var chunks = new ByteBuffer[chunkCount(size)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new ChunkedBytes(chunks, size);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Wraps the array without copying.
+     */
+    static @NotNull ChunkedBytes wrap(byte @NotNull [] bytes) {
+        var chunks = new ByteBuffer[chunkCount(bytes.length)];
+        for (int i = 0; i < chunks.length; i++) {
+            int start = i * CHUNK_SIZE;
+            chunks[i] = ByteBuffer.wrap(bytes, start, Math.min(CHUNK_SIZE, bytes.length - start)).slice()
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new ChunkedBytes(chunks, bytes.length);
+    }
+
+    private static int chunkCount(long size) {
+        return (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    long size() {
+        return size;
+    }
+
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    @NotNull ByteBuffer chunk(int index) {
+        return chunks[index];
+    }
+
+    byte get(long offset) {
+        return chunks[(int) (offset / CHUNK_SIZE)].get((int) (offset % CHUNK_SIZE));
+    }
+
+    /**
+     * Writes bytes from {@code from} inclusive to {@code to} exclusive to the channel,
+     * straight from the chunks, without copying them.
+     */
+    void transferTo(long from, long to, @NotNull WritableByteChannel channel) throws IOException {
+        while (from < to) {
+            int chunk = (int) (from / CHUNK_SIZE);
+            long chunkStart = (long) chunk * CHUNK_SIZE;
+            int start = (int) (from - chunkStart);
+            int end = (int) Math.min(chunks[chunk].limit(), to - chunkStart);
+            ByteBuffer slice = chunks[chunk].slice(start, end - start);
+            while (slice.hasRemaining()) {
+                channel.write(slice);
+            }
+            from = chunkStart + end;
+        }
+    }
+
+    /**
+     * Decodes UTF-8 bytes from {@code from} inclusive to {@code to} exclusive.
+     */
+    @NotNull String decode(long from, long to) {
+        if (to - from > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Value is too large for a String");
+        }
+        byte[] bytes = new byte[(int) (to - from)];
+        int copied = 0;
+        while (from < to) {
+            int chunk = (int) (from / CHUNK_SIZE);
+            long chunkStart = (long) chunk * CHUNK_SIZE;
+            int start = (int) (from - chunkStart);
+            int end = (int) Math.min(chunks[chunk].limit(), to - chunkStart);
+            chunks[chunk].get(start, bytes, copied, end - start);
+            copied += end - start;
+            from = chunkStart + end;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds first occurrence of the byte in range from {@code from} inclusive to {@code to} exclusive.
+     *
+     * @return absolute offset of the byte, or {@code -1} if there is none
+     */
+    long indexOf(byte b, long from, long to) {
+        long pattern = Swar.ONES * (b & 0xFF);
+        while (from < to) {
+            int chunk = (int) (from / CHUNK_SIZE);
+            long chunkStart = (long) chunk * CHUNK_SIZE;
+            ByteBuffer buffer = chunks[chunk];
+            int i = (int) (from - chunkStart);
+            int end = (int) Math.min(buffer.limit(), to - chunkStart);
+            while (end - i >= Long.BYTES) {
+                long found = Swar.zeroBytes(buffer.getLong(i) ^ pattern);
+                if (found != 0) {
+                    return chunkStart + i + Swar.firstByte(found);
+                }
+                i += Long.BYTES;
+            }
+            for (; i < end; i++) {
+                if (buffer.get(i) == b) {
+                    return chunkStart + i;
+                }
+            }
+            from = chunkStart + end;
+        }
+        return -1;
+    }
+}
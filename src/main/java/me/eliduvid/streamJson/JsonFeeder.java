@@ -0,0 +1,231 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Non-blocking counterpart of {@link JsonTokenizer}: UTF-8 input is pushed into it in chunks as they arrive,
+ * and tokens are pulled out of it as soon as they are complete. When the input fed so far ends in the middle
+ * of a token, {@link JsonTokenizer.Token#NEED_MORE_INPUT} is returned instead of waiting for the rest,
+ * so one thread may serve many inputs. Made by {@link JsonStream.Builder#feeder()}. <pre><code>
+ * void onData(ByteBuffer chunk) {
+ *     feeder.feed(chunk);
+ *     JsonTokenizer.Token token;
+ *     while ((token = feeder.nextToken()) != JsonTokenizer.Token.NEED_MORE_INPUT && token != null) {
+ *         ...
+ *     }
+ * }
+ * </code></pre>
+ * Only incomplete tokens are kept between chunks, except for strings and numbers that were not read,
+ * which are kept until the next token.
+ */
+public final class JsonFeeder {
+    private final @NotNull Utf8FeedInput input = new Utf8FeedInput();
+    private final @NotNull JsonTokenizer tokenizer;
+    private boolean ended = false;
+    /**
+     * Offset right after the current token in the window of the input.
+     */
+    private int tokenEnd = 0;
+    /**
+     * Opening quote of the string that was incomplete the last time, and how far it is known to have no end,
+     * so long strings are not scanned from the start with every chunk.
+     */
+    private int stringStart = -1;
+    private int stringScanned;
+
+    JsonFeeder(boolean multipleDocuments) {
+        tokenizer = new JsonTokenizer(input, multipleDocuments);
+    }
+
+    /**
+     * Appends all remaining bytes of the buffer to the input.
+     *
+     * @throws IllegalStateException if {@link #endOfInput()} was called
+     */
+    public void feed(@NotNull ByteBuffer bytes) {
+        if (ended) {
+            throw new IllegalStateException("Input already ended");
+        }
+        int shift = input.append(bytes);
+        tokenEnd -= shift;
+        stringStart -= shift;
+        stringScanned -= shift;
+    }
+
+    /**
+     * Tells that all input was fed, so tokens that end at the end of it are complete.
+     */
+    public void endOfInput() {
+        ended = true;
+    }
+
+    /**
+     * Moves to the next token, if it is complete in the input fed so far.
+     *
+     * @return the token, {@link JsonTokenizer.Token#NEED_MORE_INPUT} if it is not complete yet,
+     * or {@code null} after the end of input
+     * @throws IllegalStateException if input JSON is invalid
+     */
+    public @Nullable JsonTokenizer.Token nextToken() {
+        if (ended) {
+            return tokenizer.nextToken();
+        }
+        int end = scanToken();
+        if (end == -1) {
+            return JsonTokenizer.Token.NEED_MORE_INPUT;
+        }
+        JsonTokenizer.Token token = tokenizer.nextToken();
+        tokenEnd = end;
+        return token;
+    }
+
+    /**
+     * Finds the end of the next token, with key and separators before it. Tokenizer state is not known here,
+     * so a string followed only by whitespace is incomplete, as it may turn out to be a key.
+     * Invalid input is left to the tokenizer to report.
+     *
+     * @return offset right after the token, or {@code -1} if it is not complete
+     */
+    private int scanToken() {
+        int i = skipWhitespace(tokenEnd);
+        if (i == input.limit) {
+            return -1;
+        }
+        int c = input.buffer.get(i);
+        if (c == ',') {
+            i = skipWhitespace(i + 1);
+            if (i == input.limit) {
+                return -1;
+            }
+            c = input.buffer.get(i);
+        }
+        if (c == '"') {
+            int end = scanString(i);
+            if (end == -1) {
+                return -1;
+            }
+            int colon = skipWhitespace(end);
+            if (colon == input.limit) {
+                return -1;
+            }
+            if (input.buffer.get(colon) != ':') {
+                return end;
+            }
+            i = skipWhitespace(colon + 1);
+            if (i == input.limit) {
+                return -1;
+            }
+            c = input.buffer.get(i);
+        }
+        return switch (c) {
+            case '"' -> scanString(i);
+            case '1', '2', '3', '4', '5', '6', '7', '8', '9', '0', '-' -> scanNumber(i);
+            case 't', 'n' -> input.limit - i >= 4 ? i + 4 : -1;
+            case 'f' -> input.limit - i >= 5 ? i + 5 : -1;
+            default -> i + 1;
+        };
+    }
+
+    private int skipWhitespace(int i) {
+        int c;
+        while (i < input.limit && ((c = input.buffer.get(i)) == ' ' || c == '\t' || c == '\n' || c == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return offset after the closing quote, or {@code -1} if the string is not complete
+     */
+    private int scanString(int quote) {
+        int i = quote == stringStart ? stringScanned : quote + 1;
+        while (i < input.limit) {
+            int b = input.buffer.get(i);
+            if (b == '"') {
+                return i + 1;
+            }
+            if (b == '\\') {
+                if (input.limit - i == 1) {
+                    break;
+                }
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        stringStart = quote;
+        stringScanned = i;
+        return -1;
+    }
+
+    /**
+     * @return offset of the first unit after the number, which should already be there, or {@code -1}
+     */
+    private int scanNumber(int start) {
+        int i = start + 1;
+        int c;
+        while (i < input.limit && ((c = input.buffer.get(i)) >= '0' && c <= '9'
+                || c == '.' || c == 'e' || c == 'E' || c == '-' || c == '+')) {
+            i++;
+        }
+        return i == input.limit ? -1 : i;
+    }
+
+    /**
+     * See {@link JsonTokenizer#currentType()}.
+     */
+    public @Nullable JsonTokenizer.Token currentType() {
+        return tokenizer.currentType();
+    }
+
+    /**
+     * See {@link JsonTokenizer#currentDepth()}.
+     */
+    public int currentDepth() {
+        return tokenizer.currentDepth();
+    }
+
+    /**
+     * See {@link JsonTokenizer#currentKey()}.
+     */
+    public @Nullable String currentKey() {
+        return tokenizer.currentKey();
+    }
+
+    /**
+     * See {@link JsonTokenizer#currentIndex()}.
+     */
+    public int currentIndex() {
+        return tokenizer.currentIndex();
+    }
+
+    /**
+     * See {@link JsonTokenizer#getText()}.
+     */
+    public @NotNull CharSequence getText() {
+        return tokenizer.getText();
+    }
+
+    /**
+     * See {@link JsonTokenizer#getLong()}.
+     */
+    public long getLong() {
+        return tokenizer.getLong();
+    }
+
+    /**
+     * See {@link JsonTokenizer#getDouble()}.
+     */
+    public double getDouble() {
+        return tokenizer.getDouble();
+    }
+
+    /**
+     * See {@link JsonTokenizer#getBoolean()}.
+     */
+    public boolean getBoolean() {
+        return tokenizer.getBoolean();
+    }
+}
@@ -0,0 +1,400 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Source of JSON text for {@link JsonStream}. Structural characters, numbers and literals are always ASCII,
+ * so they are read as raw units of the underlying buffer. Only string contents are decoded,
+ * and only when they are actually fetched.
+ */
+abstract class JsonInput {
+    static final int EOF = -1;
+
+    private @NotNull Function<String, IllegalStateException> illegalState = IllegalStateException::new;
+    private @NotNull Consumer<StringBuilder> rawText = builder -> {
+    };
+
+    /**
+     * Sets factory for errors in input JSON, so they may carry context of the parser.
+     */
+    final void setIllegalState(@NotNull Function<String, IllegalStateException> illegalState) {
+        this.illegalState = illegalState;
+    }
+
+    /**
+     * Sets callback for the builder while a long string is copied into it by {@link #readString(StringBuilder)},
+     * so text may be taken out of the builder before the whole string is read.
+     */
+    final void setRawText(@NotNull Consumer<StringBuilder> rawText) {
+        this.rawText = rawText;
+    }
+
+    final @NotNull IllegalStateException illegalState(String s) {
+        return illegalState.apply(s);
+    }
+
+    /**
+     * Reads next raw unit of input, or {@link #EOF}.
+     * Any unit that is not ASCII only makes sense inside of a string.
+     */
+    abstract int read();
+
+    /**
+     * Returns next raw unit of input without consuming it, or {@link #EOF}.
+     */
+    abstract int peek();
+
+    /**
+     * Consumes unit returned by the last {@link #peek()}.
+     */
+    abstract void skip();
+
+    /**
+     * Reads next char of string contents, decoding it from underlying representation if needed.
+     */
+    abstract int readChar();
+
+    /**
+     * Appends string contents up to the next {@code "}, {@code \} or line break to the builder in bulk.
+     * May stop earlier, at the end of buffered input, or at any char that is easier to decode one by one.
+     */
+    abstract void readPlainStringChars(@NotNull StringBuilder builder);
+
+    /**
+     * Skips input up to the next {@code "}, {@code \} or line break, or up to the end of buffered input.
+     */
+    abstract void skipPlainStringChars();
+
+    /**
+     * Skips input up to the next {@code "} or bracket, or up to the end of buffered input.
+     */
+    abstract void skipPlainContainerChars();
+
+    /**
+     * Skips consecutive spaces in bulk. May stop before the last of them.
+     */
+    abstract void skipSpaces();
+
+    /**
+     * Skips consecutive ASCII digits.
+     */
+    abstract void skipDigits();
+
+    /**
+     * Reads next unit of input which is not JSON whitespace, or {@link #EOF}.
+     */
+    int readNonWhitespace() {
+        int c;
+        do {
+            skipSpaces();
+            c = read();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        return c;
+    }
+
+    private int readNotEof() {
+        int c = read();
+        if (c == EOF) throw illegalState("Unexpected EOF");
+        return c;
+    }
+
+    private char readCharNotEof() {
+        int c = readChar();
+        if (c == EOF) throw illegalState("Unexpected EOF");
+        return (char) c;
+    }
+
+    /**
+     * Reads 4 hex digits of a unicode escape. Surrogate pairs are escaped as two chars,
+     * so each escape is exactly one UTF-16 char.
+     */
+    private char readHexChar() {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(readNotEof(), 16);
+            if (digit == -1) {
+                throw illegalState("Invalid unicode escape");
+            }
+            value = value << 4 | digit;
+        }
+        return (char) value;
+    }
+
+    /**
+     * Reads contents of a string which opening quote was already consumed, interpreting escape sequences.
+     */
+    @NotNull String readString() {
+        var builder = new StringBuilder();
+        readStringContent(builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends contents of a string which opening quote was already consumed to the builder,
+     * interpreting escape sequences.
+     */
+    void readStringContent(@NotNull StringBuilder builder) {
+        //noinspection StatementWithEmptyBody
+        while (!readStringContentChunk(builder)) ;
+    }
+
+    /**
+     * Appends next part of contents of a string to the builder, interpreting escape sequences.
+     *
+     * @return {@code true} if the string ended, and its closing quote was consumed
+     */
+    boolean readStringContentChunk(@NotNull StringBuilder builder) {
+        readPlainStringChars(builder);
+        char c = readCharNotEof();
+        if (c == '"') {
+            return true;
+        }
+        if (c == '\\') {
+            c = readCharNotEof();
+            if (c == 'u') {
+                c = readHexChar();
+            } else if (c == '\n') {
+                throw illegalState("Unexpected end of string");
+            } else {
+                c = unescape(c);
+            }
+        } else if (c == '\n') {
+            throw illegalState("Unexpected end of string");
+        }
+        builder.append(c);
+        return false;
+    }
+
+    /**
+     * Char that escape sequence of a backslash and {@code c} stands for. Unicode escapes are handled by the caller.
+     * Unknown escapes stand for the char itself.
+     */
+    static char unescape(char c) {
+        return switch (c) {
+            case 't' -> '\t';
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            default -> c;
+        };
+    }
+
+    /**
+     * Reads object key which opening quote was already consumed. Inputs that can look at the raw key
+     * return the same {@link String} for every occurrence of a short key without escapes, see {@link KeyTable}.
+     */
+    @NotNull String readKey() {
+        return readString();
+    }
+
+    /**
+     * Appends string which opening quote was already consumed to the builder as is, with quotes and escapes.
+     */
+    void readString(@NotNull StringBuilder builder) {
+        builder.append('"');
+        //noinspection StatementWithEmptyBody
+        while (!readStringChunk(builder)) ;
+    }
+
+    /**
+     * Appends next part of a string to the builder as is, with escapes and the closing quote.
+     *
+     * @return {@code true} if the string ended, and its closing quote was appended
+     */
+    boolean readStringChunk(@NotNull StringBuilder builder) {
+        readPlainStringChars(builder);
+        rawText.accept(builder);
+        char c = readCharNotEof();
+        builder.append(c);
+        if (c == '"') {
+            return true;
+        }
+        if (c == '\\') {
+            builder.append(c = readCharNotEof());
+        }
+        if (c == '\n') {
+            throw illegalState("Unexpected end of string");
+        }
+        return false;
+    }
+
+    /**
+     * Skips string which opening quote was already consumed. Does not decode anything.
+     */
+    void skipString() {
+        while (true) {
+            skipPlainStringChars();
+            int c = readNotEof();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = readNotEof();
+            }
+            if (c == '\n') {
+                throw illegalState("Unexpected end of string");
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of object or array which opening bracket was already consumed.
+     * Only strings and brackets are looked at, so contents are not validated.
+     */
+    void skipContainer() {
+        int depth = 1;
+        while (true) {
+            skipPlainContainerChars();
+            switch (readNotEof()) {
+                case '"' -> skipString();
+                case '{', '[' -> depth++;
+                case '}', ']' -> {
+                    if (--depth == 0) {
+                        return;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends number which first char was already consumed. Number ends at the first char that can't continue it.
+     */
+    void readNumber(char firstChar, @NotNull StringBuilder builder) {
+        builder.append(firstChar);
+        int c = peek();
+        if (firstChar != '0') {
+            c = readDigits(builder);
+        }
+        if (c == '.') {
+            builder.append('.');
+            skip();
+            c = readDigits(builder);
+        }
+        if (c == 'e' || c == 'E') {
+            builder.append((char) c);
+            skip();
+            c = peek();
+            if (c == '-' || c == '+') {
+                builder.append((char) c);
+                skip();
+            }
+            readDigits(builder);
+        }
+    }
+
+    /**
+     * Appends consecutive digits to the builder.
+     *
+     * @return unit after the digits, or {@link #EOF}
+     */
+    private int readDigits(@NotNull StringBuilder builder) {
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            builder.append((char) c);
+            skip();
+        }
+        return c;
+    }
+
+    /**
+     * Skips number which first char was already consumed.
+     */
+    void skipNumber(char firstChar) {
+        if (firstChar != '0') {
+            skipDigits();
+        }
+        int c = peek();
+        if (c == '.') {
+            skip();
+            skipDigits();
+            c = peek();
+        }
+        if (c == 'e' || c == 'E') {
+            skip();
+            c = peek();
+            if (c == '-' || c == '+') {
+                skip();
+            }
+            skipDigits();
+        }
+    }
+
+    /**
+     * Checks the rest of {@code true}, {@code false} or {@code null} which first char was already consumed.
+     */
+    void skipLiteral(char firstChar) {
+        String literal = switch (firstChar) {
+            case 't' -> "true";
+            case 'f' -> "false";
+            default -> "null";
+        };
+        for (int i = 1; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw illegalState("Invalid value, expected '" + literal + "'");
+            }
+        }
+    }
+
+    /**
+     * Offset of the next byte in the whole input, if input is fully addressable.
+     *
+     * @return offset, or {@code -1} if input is not addressable
+     */
+    long offset() {
+        return -1;
+    }
+
+    /**
+     * Writes bytes of fully addressable input from {@code start} inclusive to {@code end} exclusive to the channel.
+     */
+    void transferTo(long start, long end, @NotNull WritableByteChannel channel) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Decodes bytes of fully addressable input from {@code start} inclusive to {@code end} exclusive.
+     */
+    @NotNull String text(long start, long end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Estimated number of units left in the input, {@link Long#MAX_VALUE} if unknown.
+     */
+    long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Splits off input up to the first line break after the middle of what is left, if input is fully addressable.
+     * This input continues after that line break.
+     *
+     * @return input up to and including the line break, or {@code null} if input can't be split
+     */
+    @Nullable JsonInput splitAtLineBreak() {
+        return null;
+    }
+
+    /**
+     * Counts lines from {@code start} inclusive to {@code end} exclusive that have anything but whitespace,
+     * in input that can be split.
+     */
+    long countLines(long start, long end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Releases resources held by input itself. Underlying reader or stream is not closed.
+     */
+    void close() {
+    }
+}
@@ -0,0 +1,223 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.math.BigInteger;
+
+/**
+ * Parsing of JSON numbers from their text, without making a {@link String} of it.
+ * Doubles are parsed with the algorithm of Eisel and Lemire: decimal significand is multiplied
+ * by a 128-bit approximation of the power of ten, which is enough to get correctly rounded result
+ * for almost all inputs. Rare inputs where it is not enough, and significands longer than 19 digits,
+ * are left to {@link Double#parseDouble(String)}.
+ */
+final class JsonNumbers {
+    private static final int MIN_POWER = -342;
+    private static final int MAX_POWER = 308;
+    /**
+     * Exact powers of ten for fast path of Clinger: significands up to 2^53 and powers up to 22 are exact doubles,
+     * so one multiplication or division is correctly rounded.
+     */
+    private static final double[] EXACT_POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /**
+     * High and low 64 bits of 5^q, normalized so the highest bit is set, for q from {@link #MIN_POWER}.
+     * Negative powers are rounded up.
+     */
+    private static final long[] POWERS_HIGH = new long[MAX_POWER - MIN_POWER + 1];
+    private static final long[] POWERS_LOW = new long[MAX_POWER - MIN_POWER + 1];
+
+    static {
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int q = MIN_POWER; q <= MAX_POWER; q++) {
+            BigInteger power;
+            if (q >= 0) {
+                power = BigInteger.valueOf(5).pow(q);
+                int shift = 128 - power.bitLength();
+                power = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+            } else {
+                BigInteger divisor = BigInteger.valueOf(5).pow(-q);
+                int z = divisor.subtract(BigInteger.ONE).bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                power = BigInteger.ONE.shiftLeft(b).divide(divisor).add(BigInteger.ONE);
+                if (power.bitLength() > 128) {
+                    power = power.shiftRight(power.bitLength() - 128);
+                }
+            }
+            POWERS_HIGH[q - MIN_POWER] = power.shiftRight(64).longValue();
+            POWERS_LOW[q - MIN_POWER] = power.and(mask).longValue();
+        }
+    }
+
+    private JsonNumbers() {
+    }
+
+    /**
+     * Parses JSON number without fraction and exponent.
+     *
+     * @throws NumberFormatException if number is not an integer, or doesn't fit into {@code long}
+     */
+    static long parseLong(@NotNull CharSequence text) {
+        int length = text.length();
+        boolean negative = length > 0 && text.charAt(0) == '-';
+        int i = negative ? 1 : 0;
+        if (length - i > 18 || i == length) {
+            return Long.parseLong(text, 0, length, 10);
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + text + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses JSON number into the nearest double.
+     *
+     * @throws NumberFormatException if text is not a number
+     */
+    static double parseDouble(@NotNull CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = length > 0 && text.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        long significand = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        char c = 0;
+        for (; i < length && isDigit(c = text.charAt(i)); i++) {
+            anyDigits = true;
+            if (digits > 0 || c != '0') {
+                if (digits < 19) {
+                    significand = significand * 10 + (c - '0');
+                } else {
+                    exponent++;
+                }
+                digits++;
+            }
+        }
+        if (i < length && c == '.') {
+            for (i++; i < length && isDigit(c = text.charAt(i)); i++) {
+                anyDigits = true;
+                if (digits > 0 || c != '0') {
+                    if (digits < 19) {
+                        significand = significand * 10 + (c - '0');
+                        exponent--;
+                    }
+                    digits++;
+                } else {
+                    exponent--;
+                }
+            }
+        }
+        if (i < length && (c == 'e' || c == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && ((c = text.charAt(i)) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                i++;
+            }
+            int explicit = 0;
+            int start = i;
+            for (; i < length && isDigit(c = text.charAt(i)); i++) {
+                if (explicit < 100_000) {
+                    explicit = explicit * 10 + (c - '0');
+                }
+            }
+            if (i == start) {
+                anyDigits = false;
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (!anyDigits || i != length) {
+            throw new NumberFormatException("For input string: \"" + text + "\"");
+        }
+        if (digits > 19) {
+            return Double.parseDouble(text.toString());
+        }
+        if (significand == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (exponent >= -22 && exponent <= 22 && Long.compareUnsigned(significand, 1L << 53) <= 0) {
+            double value = exponent >= 0
+                    ? significand * EXACT_POWERS[exponent]
+                    : significand / EXACT_POWERS[-exponent];
+            return negative ? -value : value;
+        }
+        if (exponent < MIN_POWER) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (exponent > MAX_POWER) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        // 19 digits may be above Long.MAX_VALUE, but still fit into unsigned long, which is what is multiplied here
+        long bits = eiselLemire(significand, exponent);
+        if (bits == -1) {
+            return Double.parseDouble(text.toString());
+        }
+        return Double.longBitsToDouble(bits | (negative ? Long.MIN_VALUE : 0));
+    }
+
+    /**
+     * Bits of positive double nearest to {@code significand * 10^exponent}.
+     *
+     * @return {@code -1} if the result can't be decided, or doesn't fit into normal doubles
+     */
+    private static long eiselLemire(long significand, int exponent) {
+        long factorHigh = POWERS_HIGH[exponent - MIN_POWER];
+        long binaryExponent = ((152170 + 65536) * (long) exponent >> 16) + 1024 + 63;
+        int leadingZeros = Long.numberOfLeadingZeros(significand);
+        significand <<= leadingZeros;
+        long lower = significand * factorHigh;
+        long upper = unsignedMultiplyHigh(significand, factorHigh);
+        if ((upper & 0x1FF) == 0x1FF && Long.compareUnsigned(lower + significand, lower) < 0) {
+            long factorLow = POWERS_LOW[exponent - MIN_POWER];
+            long secondLower = significand * factorLow;
+            long secondUpper = unsignedMultiplyHigh(significand, factorLow);
+            long productLow = lower + secondUpper;
+            if (Long.compareUnsigned(productLow, secondUpper) < 0) {
+                upper++;
+            }
+            if ((upper & 0x1FF) == 0x1FF && productLow + 1 == 0
+                    && Long.compareUnsigned(secondLower + significand, secondLower) < 0) {
+                return -1;
+            }
+            lower = productLow;
+        }
+        long upperBit = upper >>> 63;
+        long mantissa = upper >>> upperBit + 9;
+        leadingZeros += (int) (1 ^ upperBit);
+        if (lower == 0 && (upper & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            return -1;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= 1L << 53) {
+            mantissa = 1L << 52;
+            leadingZeros--;
+        }
+        mantissa &= ~(1L << 52);
+        long realExponent = binaryExponent - leadingZeros;
+        if (realExponent < 1 || realExponent > 2046) {
+            return -1;
+        }
+        return mantissa | realExponent << 52;
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + (x >> 63 & y) + (y >> 63 & x);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
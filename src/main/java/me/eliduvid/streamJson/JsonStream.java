@@ -4,13 +4,17 @@ package me.eliduvid.streamJson;
 import org.jetbrains.annotations.*;
 
 import java.io.*;
+import java.nio.channels.*;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.*;
 import java.util.stream.*;
 
 import static java.lang.Character.*;
-import static java.lang.Integer.parseInt;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Class for json stream processing. For example if you have multi-gigabyte json file
@@ -41,7 +45,9 @@ import static java.lang.Integer.parseInt;
  * </code></pre>
  * But be aware, stream produced by this class is strictly ordered and synchronous.
  * Using {@code .parallel()} method, reordering it in any way or saving {@link Node}s for use afterwards
- * will give unexpected results. If you want to use object metadata for further processing use
+ * will give unexpected results. The only exception is JSON Lines file or byte array input
+ * (see {@link Builder#jsonLines(boolean)}), which may be processed in parallel,
+ * as long as {@link Node}s are not passed between threads. If you want to use object metadata for further processing use
  * {@link Node#fetchFull()}. Something like: <pre><code>
  *     try (InputStream input = new FileInputStream(initialFile)) {
  *          JsonStream.jsonStream(input, StandardCharsets.UTF_8)
@@ -72,30 +78,124 @@ import static java.lang.Integer.parseInt;
  * Closing {@link InputStream} or {@link Reader} is callers responsibility.
  */
 public final class JsonStream implements Spliterator<JsonStream.Node> {
-    private final @NotNull Reader reader;
-    private final @NotNull List<NodeData> nodeData = new ArrayList<>();
+    private static final int VALUE_CHUNK_SIZE = 8192;
+
+    private final @NotNull JsonInput input;
+    private final @NotNull Documents documents;
+    /**
+     * Frames of the current path, by depth. Frames are reused, as deeper nodes come and go,
+     * so path of the stream allocates nothing once it reaches its maximal depth.
+     */
+    private final @NotNull List<NodeData> frames = new ArrayList<>();
+    private int depth = 0;
+    /**
+     * Current path, read-only view of the first {@link #depth} {@link #frames}.
+     */
+    private final @NotNull List<NodeData> nodeData = new PathView(0);
     private final @NotNull NodeImpl node = new NodeImpl(nodeData);
     private boolean lastValueEaten = false;
+    /**
+     * Text of the current number, or decoded contents of the current string, read by a typed accessor of the node.
+     * Reused for every node.
+     */
+    private final @NotNull StringBuilder scalar = new StringBuilder();
+    private boolean scalarRead = false;
+    /**
+     * Offset of the first unit of the value in {@link #scalar}, if input is fully addressable.
+     * Text of a string in {@link #scalar} or quoted back from it may be shorter than the value in input.
+     */
+    private long scalarStart = -1;
+    /**
+     * Destination of the value that is being written by {@link Node#writeValueTo(Appendable)}.
+     */
+    private @Nullable Appendable valueSink = null;
+    /**
+     * Reader of the current value, that should be finished before the stream moves on.
+     */
+    private @Nullable ValueReader valueReader = null;
+    /**
+     * Innermost subtree stream that didn't end yet, rest of which should be skipped before the stream moves on.
+     */
+    private @Nullable SubtreeSpliterator subtree = null;
+    /**
+     * Number of {@link #nodeData} entries that are not emitted by this stream. If not {@code 0},
+     * this stream only emits elements of the array on top of them, and ends with that array, or with the input.
+     */
+    private int baseDepth = 0;
+    /**
+     * Whether root value, or first element of base array, was already read.
+     */
+    private boolean topValueRead = false;
+    private boolean finished = false;
+    /**
+     * Whether {@code ,} was read after the last value, so the container can't be closed before the next one.
+     */
+    private boolean afterComma = false;
+    /**
+     * Range of input before this stream that was split off from it, or from the stream it was split from,
+     * and which documents are not counted in {@link NodeImpl#documentIndex} yet. Counted lazily,
+     * so parts count them in parallel. {@code -1} if there is none.
+     */
+    private long uncountedStart = -1;
+    private long uncountedEnd = -1;
+
+    private JsonStream(@NotNull JsonInput input, @NotNull Documents documents) {
+        this.input = input;
+        this.documents = documents;
+        input.setIllegalState(this::illegalState);
+        input.setRawText(this::flushValue);
+    }
 
-    private JsonStream(@NotNull Reader reader) {
-        if (!reader.markSupported()) {
-            throw new IllegalArgumentException("Only readers that support mark are allowed " +
-                    "(may be wrap with BufferedReader)");
+    /**
+     * Stream of elements of an array, which input starts right after {@code [} or {@code ,} of it.
+     */
+    private JsonStream(@NotNull JsonInput input, @NotNull List<NodeData> path, int firstIndex) {
+        this(input, Documents.SINGLE);
+        for (NodeData data : path) {
+            frames.add(data.copy());
         }
-        this.reader = reader;
+        depth = frames.size();
+        getLast().arrayIndex = firstIndex;
+        baseDepth = depth;
+        node.documentIndex = 0;
     }
 
-    private JsonStream(@NotNull InputStream input, @NotNull Charset charset) {
-        this(new BufferedReader(new InputStreamReader(input, charset)));
+    /**
+     * How input is divided into documents.
+     */
+    private enum Documents {
+        SINGLE,
+        CONCATENATED,
+        /**
+         * Concatenated documents, each on its own line, so input may be split at line breaks.
+         */
+        LINES
     }
 
     @Override
     public boolean tryAdvance(@NotNull Consumer<? super Node> action) {
-        if (nodeData.isEmpty()) {
-            char c = readNonWhitespace();
-            addCurrentValue(c, "");
-            action.accept(node);
-            return true;
+        return tryAdvance(action, 0);
+    }
+
+    /**
+     * Advances to the next node, unless it is outside the container at {@code floor} depth.
+     * Closing bracket of that container is consumed, but it stays on the path marked as eaten,
+     * so the stream goes on from there as usual.
+     *
+     * @param floor depth of the container, or {@code 0} to read the whole input
+     */
+    private boolean tryAdvance(@NotNull Consumer<? super Node> action, int floor) {
+        if (valueReader != null) {
+            valueReader.close();
+        }
+        while (subtree != null && subtree.rootDepth > floor) {
+            subtree.close();
+        }
+        if (finished || depth < floor) {
+            return false;
+        }
+        if (depth == baseDepth) {
+            return nextTopValue(action);
         }
         while (true) {
             NodeData last = getLast();
@@ -106,36 +206,54 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
                 }
                 case OBJECT -> {
                     if (lastValueEaten) {
+                        if (depth == floor) {
+                            return false;
+                        }
                         popLast();
                         lastValueEaten = false;
                     } else {
                         char c = readNonWhitespace();
                         switch (c) {
                             case '"' -> {
-                                String name = readString();
+                                String name = input.readKey();
                                 if (readNonWhitespace() != ':') {
                                     throw illegalState("non':' character after object key");
                                 }
                                 c = readNonWhitespace();
-                                addCurrentValue(c, name);
+                                addCurrentValue(c, name, -1);
                                 action.accept(node);
                                 return true;
                             }
-                            case '}' -> popLast();
+                            case '}' -> {
+                                if (afterComma) {
+                                    throw illegalState("Unexpected char '}'");
+                                }
+                                if (!closeLast(floor)) {
+                                    return false;
+                                }
+                            }
                             default -> throw illegalState("Unexpected char '" + c + "'");
                         }
                     }
                 }
                 case ARRAY -> {
                     if (lastValueEaten) {
+                        if (depth == floor) {
+                            return false;
+                        }
                         popLast();
                         lastValueEaten = false;
                     } else {
                         char c = readNonWhitespace();
                         if (c == ']') {
-                            popLast();
+                            if (afterComma) {
+                                throw illegalState("Unexpected char ']'");
+                            }
+                            if (!closeLast(floor)) {
+                                return false;
+                            }
                         } else {
-                            addCurrentValue(c, Integer.toString(last.arrayIndex++));
+                            addCurrentValue(c, null, last.arrayIndex++);
                             action.accept(node);
                             return true;
                         }
@@ -145,7 +263,7 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
                     if (lastValueEaten) {
                         lastValueEaten = false;
                     } else {
-                        skipNumber(last.firstChar);
+                        input.skipNumber(last.firstChar);
                     }
                     popLast();
                 }
@@ -153,98 +271,131 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
                     if (lastValueEaten) {
                         lastValueEaten = false;
                     } else {
-                        skipString();
+                        input.skipString();
                     }
                     popLast();
                 }
             }
-            if (nodeData.isEmpty()) return false;
-            getToNextValue();
-            if (nodeData.isEmpty()) return false;
+            if (depth == baseDepth) return nextTopValue(action);
+            if (!getToNextValue(floor)) return false;
+            if (depth == baseDepth) return nextTopValue(action);
         }
     }
 
-    private void getToNextValue() {
-        char c;
-        while (!nodeData.isEmpty() && (c = readNonWhitespace()) != ',') {
+    private boolean nextTopValue(@NotNull Consumer<? super Node> action) {
+        if (baseDepth != 0) {
+            return nextBaseElement(action);
+        }
+        if (topValueRead && documents == Documents.SINGLE) {
+            int c = input.readNonWhitespace();
+            if (c != JsonInput.EOF) {
+                throw illegalState("Unexpected char '" + (char) c + "' after the end of document");
+            }
+            finished = true;
+            return false;
+        }
+        return startDocument(action);
+    }
+
+    /**
+     * Emits next element of the array at {@link #baseDepth}.
+     * Input may end between elements, as this stream may only cover part of the array.
+     */
+    private boolean nextBaseElement(@NotNull Consumer<? super Node> action) {
+        int c = input.readNonWhitespace();
+        if (topValueRead && c == ',') {
+            c = readNonWhitespace();
+        } else if (c == JsonInput.EOF || c == ']') {
+            finished = true;
+            return false;
+        } else if (topValueRead) {
+            throw illegalState("Array values should be separated by ',', not '" + (char) c + "'");
+        }
+        topValueRead = true;
+        addCurrentValue((char) c, null, getLast().arrayIndex++);
+        action.accept(node);
+        return true;
+    }
+
+    /**
+     * Emits root node of the next document.
+     * Input may only end here if it has multiple documents, where it means there are no more of them.
+     */
+    private boolean startDocument(@NotNull Consumer<? super Node> action) {
+        int c = input.readNonWhitespace();
+        if (c == JsonInput.EOF) {
+            if (documents != Documents.SINGLE) {
+                finished = true;
+                return false;
+            }
+            throw illegalState("Unexpected EOF");
+        }
+        topValueRead = true;
+        if (uncountedStart != -1) {
+            node.documentIndex += input.countLines(uncountedStart, uncountedEnd);
+            uncountedStart = -1;
+        }
+        node.documentIndex++;
+        addCurrentValue((char) c, "", -1);
+        action.accept(node);
+        return true;
+    }
+
+    /**
+     * @return {@code false} if container at {@code floor} depth was closed
+     */
+    private boolean getToNextValue(int floor) {
+        while (depth > baseDepth) {
+            char c = readNonWhitespace();
+            if (c == ',') {
+                afterComma = true;
+                return true;
+            }
             switch (c) {
                 case '}' -> {
-                    if (popLast().type != NodeType.OBJECT) {
+                    if (getLast().type != NodeType.OBJECT) {
                         throw illegalState("Unexpected '}'");
                     }
                 }
                 case ']' -> {
-                    if (popLast().type != NodeType.ARRAY) {
+                    if (getLast().type != NodeType.ARRAY) {
                         throw illegalState("Unexpected ']'");
                     }
                 }
                 default -> throw illegalState("Unexpected char '" + c + "'");
             }
+            if (!closeLast(floor)) {
+                return false;
+            }
         }
+        return true;
     }
 
-    private @NotNull IllegalStateException illegalState(String s) {
-        return new IllegalStateException(s + ". Path: " + nodeData.stream()
-                .map(NodeData::name).collect(Collectors.joining("/")));
-    }
-
-    private void readNumber(char firstChar, @NotNull StringBuilder builder) {
-        builder.append(firstChar);
-        if (firstChar != '0') {
-            char c;
-            while (isDigit(c = peek())) {
-                builder.append(c);
-                skipOne();
-            }
-            if (c == '.') {
-                builder.append(c);
-                skipOne();
-                while (isDigit(c = peek())) {
-                    builder.append(c);
-                    skipOne();
-                }
-            }
-            if (c == 'e') {
-                skipOne();
-                c = read();
-                if (c != '-' && c != '+') {
-                    throw illegalState("exponent should start with + or -, not '" + c + "'");
-                }
-                builder.append(c);
-                while (isDigit(c = peek())) {
-                    builder.append(c);
-                    skipOne();
-                }
-            }
+    /**
+     * Pops container which closing bracket was read, unless it is at {@code floor} depth,
+     * in which case it is marked as eaten instead.
+     *
+     * @return {@code false} if container at {@code floor} depth was closed
+     */
+    private boolean closeLast(int floor) {
+        if (depth == floor) {
+            lastValueEaten = true;
+            return false;
         }
+        popLast();
+        return true;
     }
 
-    private void skipNumber(char firstChar) {
-        if (firstChar != '0') {
-            char c;
-            while (isDigit(c = peek())) {
-                skipOne();
-            }
-            if (c == '.') {
-                skipOne();
-                while (isDigit(c = peek())) {
-                    skipOne();
-                }
-            }
-            if (c == 'e' || c == 'E') {
-                skipOne();
-                c = read();
-                if (c != '-' && c != '+') {
-                    throw illegalState("exponent should start with + or -, not '" + c + "'");
-                }
-                while (isDigit(peek())) {
-                    skipOne();
-                }
-            }
-        }
+    private @NotNull IllegalStateException illegalState(String s) {
+        return new IllegalStateException(s + ". Path: " + nodeData.stream()
+                .map(NodeData::name).collect(Collectors.joining("/")));
     }
 
-    private void addCurrentValue(char c, @NotNull String name) {
+    /**
+     * @param name  key of the value, or {@code null} for array elements
+     * @param index index of array element, or {@code -1}
+     */
+    private void addCurrentValue(char c, @Nullable String name, int index) {
         NodeType type = getTypeByFirstChar(c);
         switch (type) {
             case NULL, BOOLEAN -> {
@@ -256,7 +407,13 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
                 lastValueEaten = false;
             }
         }
-        nodeData.add(new NodeData(type, name, c));
+        scalarRead = false;
+        afterComma = false;
+        node.range = null;
+        if (depth == frames.size()) {
+            frames.add(new NodeData());
+        }
+        frames.get(depth++).set(type, name, index, c);
     }
 
 
@@ -301,62 +458,11 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
 
     @SuppressWarnings("UnusedReturnValue")
     private @NotNull NodeData popLast() {
-        return nodeData.remove(nodeData.size() - 1);
+        return frames.get(--depth);
     }
 
     private @NotNull NodeData getLast() {
-        return nodeData.get(nodeData.size() - 1);
-    }
-
-    private @NotNull String readString() {
-        var builder = new StringBuilder();
-        char c;
-        while ((c = read()) != '"') {
-            builder.append(c);
-            if (c == '\\') {
-                switch (c = read()) {
-                    case 'u' -> builder.append(toChars(parseInt(read(4), 16)));
-                    case 't' -> builder.append('\t');
-                    case 'b' -> builder.append('\b');
-                    case 'n' -> builder.append('\n');
-                    case 'r' -> builder.append('\r');
-                    case '\n' -> throw illegalState("Unexpected end of string");
-                    default -> builder.append(c);
-                }
-            }
-            if (c == '\n') {
-                throw illegalState("Unexpected end of string");
-            }
-        }
-        return builder.toString();
-    }
-
-    private void readString(@NotNull StringBuilder builder) {
-        builder.append('"');
-        char c;
-        while ((c = read()) != '"') {
-            builder.append(c);
-            if (c == '\\') {
-                builder.append(c = read());
-            }
-            if (c == '\n') {
-                throw illegalState("Unexpected end of string");
-            }
-        }
-        builder.append(c);
-    }
-
-    private void skipString() {
-        char c = read();
-        while (c != '"') {
-            if (c == '\\') {
-                c = read();
-                if (c == '\n') {
-                    throw illegalState("Unexpected end of string");
-                }
-            }
-            c = read();
-        }
+        return frames.get(depth - 1);
     }
 
     private void readObject(@NotNull StringBuilder builder) {
@@ -381,7 +487,7 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
         if (c != '"') {
             throw illegalState("object key should start with '\"', not '" + c + "'");
         }
-        readString(builder);
+        input.readString(builder);
         c = readWhitespace(builder);
         if (c != ':') {
             throw illegalState("key and value should be separated with ':'");
@@ -403,11 +509,27 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
         NodeType type = getTypeByFirstChar(c);
         switch (type) {
             case OBJECT -> readObject(builder);
-            case NUMBER -> readNumber(c, builder);
+            case NUMBER -> input.readNumber(c, builder);
             case BOOLEAN, NULL -> builder.append(readLiteralValue(c));
-            case STRING -> readString(builder);
+            case STRING -> input.readString(builder);
             case ARRAY -> readArray(builder);
         }
+        flushValue(builder);
+    }
+
+    /**
+     * Moves text of the value from the builder to {@link #valueSink}, if value is being written and there is
+     * enough of it. Called as value is read, so only a bounded part of it is ever held in memory.
+     */
+    private void flushValue(@NotNull StringBuilder builder) {
+        if (valueSink != null && builder.length() >= VALUE_CHUNK_SIZE) {
+            try {
+                valueSink.append(builder);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            builder.setLength(0);
+        }
     }
 
     private void readArray(@NotNull StringBuilder builder) {
@@ -446,11 +568,9 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
     }
 
     private char readNonWhitespace() {
-        char c = read();
-        while (isWhitespace(c)) {
-            c = read();
-        }
-        return c;
+        int c = input.readNonWhitespace();
+        if (c == JsonInput.EOF) throw illegalState("Unexpected EOF");
+        return (char) c;
     }
 
     private boolean isWhitespace(char c) {
@@ -461,63 +581,105 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
     }
 
     private char read() {
-        int c;
-        try {
-            c = reader.read();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        if (c == -1) throw illegalState("Unexpected EOF");
+        int c = input.read();
+        if (c == JsonInput.EOF) throw illegalState("Unexpected EOF");
         return (char) c;
     }
 
-    private void skipOne() {
-        try {
-            if (reader.skip(1) == 0) {
-                throw illegalState("Unexpected EOF");
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private @NotNull String read(int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = read();
         }
+        return new String(chars);
     }
 
-    private char peek() {
-        try {
-            reader.mark(1);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Skips value of the current node. None of its child nodes will appear in the stream.
+     */
+    void skipCurrentValue() {
+        if (lastValueEaten) {
+            return;
         }
-        char c = read();
-        try {
-            reader.reset();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        NodeData last = getLast();
+        switch (last.type) {
+            case OBJECT, ARRAY -> input.skipContainer();
+            case STRING -> input.skipString();
+            case NUMBER -> input.skipNumber(last.firstChar);
+            case NULL, BOOLEAN -> {
+            }
         }
-        return c;
+        lastValueEaten = true;
     }
 
-    private @NotNull String read(int length) {
-        char[] buffer = new char[length];
-
-        try {
-            int charsRead = reader.read(buffer);
-            if (charsRead < length) {
-                throw illegalState("Unexpected EOF");
+    /**
+     * Skips everything up to the array at the path and makes this stream only emit descendants of it.
+     *
+     * @param path keys of objects and indexes of arrays leading from the root to the array
+     * @return {@code false} if there is no array at the path, in which case the whole input is consumed
+     */
+    boolean enterArray(@NotNull List<String> path) {
+        var found = new boolean[1];
+        //noinspection StatementWithEmptyBody
+        while (!found[0] && tryAdvance(node -> {
+            int level = depth - 1;
+            NodeData last = getLast();
+            if (level > 0 && !last.nameEquals(path.get(level - 1))
+                    || level == path.size() && last.type != NodeType.ARRAY) {
+                skipCurrentValue();
+            } else if (level == path.size()) {
+                found[0] = true;
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        })) ;
+        if (found[0]) {
+            baseDepth = depth;
+            topValueRead = false;
         }
-        return new String(buffer);
+        return found[0];
+    }
+
+    /**
+     * Makes stream of a part of the array this stream {@link #enterArray(List) entered}.
+     *
+     * @param input      input that starts right after {@code [} or {@code ,} of the array
+     * @param firstIndex index of the first element in the input
+     */
+    @NotNull JsonStream arrayPart(@NotNull JsonInput input, int firstIndex) {
+        return new JsonStream(input, nodeData.subList(0, baseDepth), firstIndex);
+    }
+
+    void close() {
+        input.close();
     }
 
+    /**
+     * Splits JSON Lines input that is fully addressable, like file or byte array,
+     * at the first line break after the middle of what is left. Only happens between documents.
+     */
     @Override
     public @Nullable Spliterator<Node> trySplit() {
-        return null;
+        if (documents != Documents.LINES || depth != 0) {
+            return null;
+        }
+        long start = input.offset();
+        JsonInput prefix = input.splitAtLineBreak();
+        if (prefix == null) {
+            return null;
+        }
+        var part = new JsonStream(prefix, Documents.LINES);
+        part.node.documentIndex = node.documentIndex;
+        part.uncountedStart = uncountedStart;
+        part.uncountedEnd = uncountedEnd;
+        if (uncountedStart == -1) {
+            uncountedStart = start;
+        }
+        uncountedEnd = input.offset();
+        return part;
     }
 
     @Override
     public long estimateSize() {
-        return Long.MAX_VALUE;
+        return input.estimateSize();
     }
 
     @Override
@@ -525,123 +687,906 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
         return Spliterator.NONNULL | Spliterator.ORDERED;
     }
 
-    private class NodeImpl implements Node {
-        private final @NotNull List<NodeData> nodeData;
-        private @Nullable String data;
-
-        private NodeImpl(@NotNull List<NodeData> nodeData, @Nullable String data) {
-            this.nodeData = Collections.unmodifiableList(nodeData);
-            this.data = data;
-        }
-
-        private NodeImpl(@NotNull List<NodeData> nodeData) {
-            this(nodeData, null);
-        }
-
-        @Override
-        public @NotNull List<NodeData> getNodeData() {
-            return nodeData;
+    /**
+     * Decodes JSON string with quotes and escapes.
+     */
+    private static @NotNull String unquote(@NotNull String text) {
+        int end = text.length() - 1;
+        if (text.indexOf('\\') == -1) {
+            return text.substring(1, end);
         }
-
-        public @NotNull String getValue() {
-            if (data == null) {
-                NodeData last = getLast();
-                data = readValue(last.firstChar);
-                lastValueEaten = true;
+        var builder = new StringBuilder(end);
+        for (int i = 1; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                c = text.charAt(++i);
+                if (c == 'u') {
+                    c = (char) Integer.parseInt(text, i + 1, i + 5, 16);
+                    i += 4;
+                } else {
+                    c = JsonInput.unescape(c);
+                }
             }
-            return data;
+            builder.append(c);
         }
+        return builder.toString();
+    }
 
-        @Override
-        public @NotNull Node fetchFull() {
-            return new NodeImpl(List.copyOf(nodeData), getValue());
+    /**
+     * Encodes string as JSON, escaping only what has to be escaped.
+     */
+    private static @NotNull String quote(@NotNull CharSequence chars) {
+        var builder = new StringBuilder(chars.length() + 2).append('"');
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            switch (c) {
+                case '"', '\\' -> builder.append('\\').append(c);
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                case '\b' -> builder.append("\\b");
+                case '\f' -> builder.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
         }
+        return builder.append('"').toString();
     }
 
-    // Public API:
-
-    public enum NodeType {
-        OBJECT,
-        ARRAY,
-        STRING,
-        NUMBER,
-        BOOLEAN,
-        NULL
+    private static long utf8Length(@NotNull String text) {
+        long length = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800 && !isSurrogate(c)) {
+                length += 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
     }
 
     /**
-     * Represents JSON node metadata. List of those may represent path to specific node
+     * Reader of a value which is read from the input part by part, as reader is read.
+     * Closing it before the end skips the rest of the value.
      */
-    public static final class NodeData {
-        private final NodeType type;
-        private final String name;
-        private final char firstChar;
-        private int arrayIndex = 0;
+    private abstract class ValueReader extends Reader {
+        private final @NotNull StringBuilder pending = new StringBuilder();
+        private int next = 0;
+        private boolean ended = false;
+        private boolean closed = false;
 
-        private NodeData(@NotNull NodeType type, @NotNull String name, char firstChar) {
-            this.type = type;
-            this.name = name;
-            this.firstChar = firstChar;
+        @Override
+        public int read(char @NotNull [] chars, int offset, int length) throws IOException {
+            Objects.checkFromIndexSize(offset, length, chars.length);
+            if (closed) {
+                throw new IOException("Reader is closed");
+            }
+            if (length == 0) {
+                return 0;
+            }
+            while (next == pending.length()) {
+                if (ended) {
+                    return -1;
+                }
+                pending.setLength(0);
+                next = 0;
+                ended = readChunk(pending);
+            }
+            int count = Math.min(length, pending.length() - next);
+            pending.getChars(next, next + count, chars, offset);
+            next += count;
+            return count;
         }
 
-        public @NotNull NodeType type() {
-            return type;
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!ended) {
+                ended = true;
+                skipRest();
+            }
+            if (valueReader == this) {
+                valueReader = null;
+            }
         }
 
         /**
-         * Name of parent's key under which you can find current node.
-         * String repr of an integer for array values.
-         * Always {@code ""} for root node.
+         * Appends next part of the value.
+         *
+         * @return {@code true} if the value ended
          */
-        public @NotNull String name() {
-            return name;
+        abstract boolean readChunk(@NotNull StringBuilder pending);
+
+        abstract void skipRest();
+    }
+
+    private final class StringContentReader extends ValueReader {
+        @Override
+        boolean readChunk(@NotNull StringBuilder pending) {
+            return input.readStringContentChunk(pending);
         }
 
         @Override
-        public boolean equals(@Nullable Object obj) {
-            if (obj == this) return true;
-            if (obj == null || obj.getClass() != this.getClass()) return false;
-            var that = (NodeData) obj;
-            return Objects.equals(this.type, that.type) &&
-                    Objects.equals(this.name, that.name) &&
-                    this.firstChar == that.firstChar;
+        void skipRest() {
+            input.skipString();
         }
+    }
+
+    private final class RawStringReader extends ValueReader {
+        private boolean started = false;
 
         @Override
-        public int hashCode() {
-            return Objects.hash(type, name, firstChar);
+        boolean readChunk(@NotNull StringBuilder pending) {
+            if (!started) {
+                started = true;
+                pending.append('"');
+            }
+            return input.readStringChunk(pending);
         }
 
-        @Contract(pure = true)
         @Override
-        public @NotNull String toString() {
-            return "NodeData[" +
-                    "type=" + type + ", " +
-                    "name=" + name + ", " +
-                    "firstChar=" + firstChar + ']';
+        void skipRest() {
+            input.skipString();
         }
     }
 
     /**
-     * Represents JSON node
+     * Copies object or array as is, only looking at strings and brackets, so contents are not validated.
      */
-    public interface Node {
-        /**
-         * Returns path to current node represented as List of {@link NodeData} objects.
-         */
-        @NotNull List<NodeData> getNodeData();
+    private final class ContainerReader extends ValueReader {
+        private final char firstChar;
+        private boolean started = false;
+        private boolean inString = false;
+        private int depth = 1;
 
-        /**
-         * Read string repr of current node from the input. All child nodes will not appear in the stream
-         */
-        @NotNull String getValue();
+        private ContainerReader(char firstChar) {
+            this.firstChar = firstChar;
+        }
 
-        /**
+        @Override
+        boolean readChunk(@NotNull StringBuilder pending) {
+            if (!started) {
+                started = true;
+                pending.append(firstChar);
+            }
+            while (pending.length() < VALUE_CHUNK_SIZE) {
+                if (inString) {
+                    inString = !input.readStringChunk(pending);
+                    continue;
+                }
+                char c = JsonStream.this.read();
+                pending.append(c);
+                switch (c) {
+                    case '"' -> inString = true;
+                    case '{', '[' -> depth++;
+                    case '}', ']' -> {
+                        if (--depth == 0) {
+                            return true;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void skipRest() {
+            if (inString) {
+                input.skipString();
+            }
+            for (int i = 0; i < depth; i++) {
+                input.skipContainer();
+            }
+        }
+    }
+
+    /**
+     * Current path from the frame at {@code from} depth.
+     */
+    private final class PathView extends AbstractList<NodeData> implements RandomAccess {
+        private final int from;
+
+        private PathView(int from) {
+            this.from = from;
+        }
+
+        @Override
+        public @NotNull NodeData get(int index) {
+            return frames.get(from + Objects.checkIndex(index, depth - from));
+        }
+
+        @Override
+        public int size() {
+            return depth - from;
+        }
+    }
+
+    /**
+     * Spliterator over nodes inside the container which is the current node, ending at its closing bracket.
+     */
+    private final class SubtreeSpliterator extends Spliterators.AbstractSpliterator<Node> {
+        private final int rootDepth;
+        private final boolean childrenOnly;
+        private final @NotNull SubtreeNode subtreeNode;
+        private final @Nullable SubtreeSpliterator parent;
+        private boolean ended = false;
+
+        private SubtreeSpliterator(boolean childrenOnly) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.rootDepth = depth;
+            this.childrenOnly = childrenOnly;
+            this.subtreeNode = new SubtreeNode(rootDepth - 1);
+            this.parent = subtree;
+            subtree = this;
+        }
+
+        @Override
+        public boolean tryAdvance(@NotNull Consumer<? super Node> action) {
+            while (!ended) {
+                if (childrenOnly && depth > rootDepth) {
+                    skipCurrentValue();
+                }
+                if (!JsonStream.this.tryAdvance(node -> {
+                }, rootDepth)) {
+                    end();
+                } else if (!childrenOnly || depth == rootDepth + 1) {
+                    action.accept(subtreeNode);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Skips the rest of the subtree.
+         */
+        private void close() {
+            while (!ended) {
+                skipCurrentValue();
+                if (!JsonStream.this.tryAdvance(node -> {
+                }, rootDepth)) {
+                    end();
+                }
+            }
+        }
+
+        private void end() {
+            ended = true;
+            if (subtree == this) {
+                subtree = parent;
+            }
+        }
+    }
+
+    /**
+     * Current node with path starting from the root of a subtree.
+     */
+    private final class SubtreeNode implements Node {
+        private final int from;
+        private final @NotNull List<NodeData> nodeData;
+
+        private SubtreeNode(int from) {
+            this.from = from;
+            this.nodeData = Collections.unmodifiableList(new PathView(from));
+        }
+
+        @Override
+        public @NotNull List<NodeData> getNodeData() {
+            return nodeData;
+        }
+
+        @Override
+        public @NotNull String getValue() {
+            return node.getValue();
+        }
+
+        @Override
+        public void writeValueTo(@NotNull Appendable out) {
+            node.writeValueTo(out);
+        }
+
+        @Override
+        public void writeValueTo(@NotNull OutputStream out) {
+            node.writeValueTo(out);
+        }
+
+        @Override
+        public @NotNull Reader openValueReader() {
+            return node.openValueReader();
+        }
+
+        @Override
+        public @NotNull Reader openStringContentReader() {
+            return node.openStringContentReader();
+        }
+
+        @Override
+        public @NotNull ValueRange valueRange() {
+            return node.valueRange();
+        }
+
+        @Override
+        public void transferTo(@NotNull WritableByteChannel channel) {
+            node.transferTo(channel);
+        }
+
+        @Override
+        public long getLong() {
+            return node.getLong();
+        }
+
+        @Override
+        public double getDouble() {
+            return node.getDouble();
+        }
+
+        @Override
+        public boolean getBoolean() {
+            return node.getBoolean();
+        }
+
+        @Override
+        public @NotNull String getString() {
+            return node.getString();
+        }
+
+        @Override
+        public @NotNull Node fetchFull() {
+            return node.fetchFull(from);
+        }
+
+        @Override
+        public void skip() {
+            node.skip();
+        }
+
+        @Override
+        public long documentIndex() {
+            return node.documentIndex();
+        }
+
+        @Override
+        public @NotNull Stream<Node> children() {
+            return node.children();
+        }
+
+        @Override
+        public @NotNull Stream<Node> descendants() {
+            return node.descendants();
+        }
+    }
+
+    private class NodeImpl implements Node {
+        private final @NotNull List<NodeData> nodeData;
+        private @Nullable String data;
+        private long documentIndex;
+        private @Nullable ValueRange range = null;
+
+        private NodeImpl(@NotNull List<NodeData> nodeData, @Nullable String data, long documentIndex) {
+            this.nodeData = Collections.unmodifiableList(nodeData);
+            this.data = data;
+            this.documentIndex = documentIndex;
+        }
+
+        private NodeImpl(@NotNull List<NodeData> nodeData) {
+            this(nodeData, null, -1);
+        }
+
+        @Override
+        public @NotNull List<NodeData> getNodeData() {
+            return nodeData;
+        }
+
+        public @NotNull String getValue() {
+            if (data == null) {
+                if (range != null) {
+                    data = input.text(range.start, range.end);
+                    return data;
+                }
+                if (scalarRead) {
+                    data = leaf().type == NodeType.STRING ? quote(scalar) : scalar.toString();
+                    return data;
+                }
+                if (lastValueEaten) {
+                    throw new IllegalStateException("Value of the node was skipped");
+                }
+                NodeData last = getLast();
+                data = readValue(last.firstChar);
+                lastValueEaten = true;
+            }
+            return data;
+        }
+
+        @Override
+        public void writeValueTo(@NotNull Appendable out) {
+            try {
+                if (data != null || scalarRead || range != null) {
+                    out.append(getValue());
+                    return;
+                }
+                if (lastValueEaten) {
+                    throw new IllegalStateException("Value of the node was skipped");
+                }
+                var builder = new StringBuilder(2 * VALUE_CHUNK_SIZE);
+                valueSink = out;
+                try {
+                    readValue(builder, getLast().firstChar);
+                } finally {
+                    valueSink = null;
+                    lastValueEaten = true;
+                }
+                out.append(builder);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void writeValueTo(@NotNull OutputStream out) {
+            var writer = new OutputStreamWriter(out, UTF_8);
+            writeValueTo(writer);
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public @NotNull Reader openValueReader() {
+            if (data != null || scalarRead || range != null) {
+                return new StringReader(getValue());
+            }
+            NodeData last = getLast();
+            return switch (last.type) {
+                case STRING -> openReader(new RawStringReader());
+                case OBJECT, ARRAY -> openReader(new ContainerReader(last.firstChar));
+                default -> new StringReader(getValue());
+            };
+        }
+
+        @Override
+        public @NotNull Reader openStringContentReader() {
+            requireType(NodeType.STRING);
+            if (data != null || scalarRead) {
+                return new StringReader(getString());
+            }
+            return openReader(new StringContentReader());
+        }
+
+        private @NotNull Reader openReader(@NotNull ValueReader reader) {
+            if (lastValueEaten) {
+                throw new IllegalStateException("Value of the node was skipped");
+            }
+            lastValueEaten = true;
+            valueReader = reader;
+            return reader;
+        }
+
+        @Override
+        public @NotNull ValueRange valueRange() {
+            if (range == null) {
+                if (input.offset() == -1) {
+                    throw new UnsupportedOperationException("Value range is only known for file and byte array input");
+                }
+                if (this != node) {
+                    throw new IllegalStateException("Value range was not taken before the node was fetched");
+                }
+                if (scalarRead) {
+                    range = new ValueRange(scalarStart, input.offset());
+                } else if (data != null) {
+                    long end = input.offset();
+                    range = new ValueRange(end - utf8Length(data), end);
+                } else if (lastValueEaten) {
+                    throw new IllegalStateException("Value of the node was already consumed");
+                } else {
+                    long start = input.offset() - 1;
+                    skipCurrentValue();
+                    range = new ValueRange(start, input.offset());
+                }
+            }
+            return range;
+        }
+
+        @Override
+        public void transferTo(@NotNull WritableByteChannel channel) {
+            if (input.offset() == -1) {
+                writeValueTo(Channels.newOutputStream(channel));
+                return;
+            }
+            ValueRange range = valueRange();
+            try {
+                input.transferTo(range.start, range.end, channel);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public long getLong() {
+            return JsonNumbers.parseLong(number());
+        }
+
+        @Override
+        public double getDouble() {
+            return JsonNumbers.parseDouble(number());
+        }
+
+        @Override
+        public boolean getBoolean() {
+            requireType(NodeType.BOOLEAN);
+            return "true".equals(data);
+        }
+
+        @Override
+        public @NotNull String getString() {
+            requireType(NodeType.STRING);
+            if (data != null) {
+                return unquote(data);
+            }
+            readScalar();
+            return scalar.toString();
+        }
+
+        private @NotNull CharSequence number() {
+            requireType(NodeType.NUMBER);
+            if (data != null) {
+                return data;
+            }
+            readScalar();
+            return scalar;
+        }
+
+        /**
+         * Reads number or string of the current node into {@link #scalar}, unless it is there already.
+         */
+        private void readScalar() {
+            if (scalarRead) {
+                return;
+            }
+            if (lastValueEaten) {
+                throw new IllegalStateException("Value of the node was skipped");
+            }
+            NodeData last = getLast();
+            scalarStart = input.offset() - 1;
+            scalar.setLength(0);
+            if (last.type == NodeType.NUMBER) {
+                input.readNumber(last.firstChar, scalar);
+            } else {
+                input.readStringContent(scalar);
+            }
+            scalarRead = true;
+            lastValueEaten = true;
+        }
+
+        private void requireType(@NotNull NodeType type) {
+            if (leaf().type != type) {
+                throw new IllegalStateException("Node is " + leaf().type + ", not " + type);
+            }
+        }
+
+        @Override
+        public @NotNull Node fetchFull() {
+            return fetchFull(0);
+        }
+
+        /**
+         * Copies node with path from {@code from} depth.
+         */
+        private @NotNull Node fetchFull(int from) {
+            String value = getValue();
+            var path = nodeData.subList(from, nodeData.size()).stream().map(NodeData::copy).toList();
+            var full = new NodeImpl(path, value, documentIndex);
+            full.range = range;
+            return full;
+        }
+
+        @Override
+        public @NotNull Stream<Node> children() {
+            return StreamSupport.stream(subtree(true), false);
+        }
+
+        @Override
+        public @NotNull Stream<Node> descendants() {
+            return StreamSupport.stream(subtree(false), false);
+        }
+
+        private @NotNull Spliterator<Node> subtree(boolean childrenOnly) {
+            NodeType type = leaf().type;
+            if (type != NodeType.OBJECT && type != NodeType.ARRAY) {
+                return Spliterators.emptySpliterator();
+            }
+            if (this != node || data != null || lastValueEaten) {
+                throw new IllegalStateException("Value of the node was already consumed");
+            }
+            return new SubtreeSpliterator(childrenOnly);
+        }
+
+        @Override
+        public void skip() {
+            if (data == null) {
+                skipCurrentValue();
+            }
+        }
+
+        @Override
+        public long documentIndex() {
+            return documentIndex;
+        }
+    }
+
+    // Public API:
+
+    public enum NodeType {
+        OBJECT,
+        ARRAY,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL
+    }
+
+    /**
+     * Represents JSON node metadata. List of those may represent path to specific node.
+     * {@link NodeData} of a stream is reused for following nodes at the same depth,
+     * so it is only valid while its node is current. {@link Node#fetchFull()} copies it.
+     */
+    public static final class NodeData {
+        private NodeType type;
+        private @Nullable String name;
+        private int index;
+        private char firstChar;
+        private int arrayIndex;
+
+        private NodeData() {
+        }
+
+        private void set(@NotNull NodeType type, @Nullable String name, int index, char firstChar) {
+            this.type = type;
+            this.name = name;
+            this.index = index;
+            this.firstChar = firstChar;
+            this.arrayIndex = 0;
+        }
+
+        private @NotNull NodeData copy() {
+            var copy = new NodeData();
+            copy.set(type, name, index, firstChar);
+            copy.arrayIndex = arrayIndex;
+            return copy;
+        }
+
+        public @NotNull NodeType type() {
+            return type;
+        }
+
+        /**
+         * Name of parent's key under which you can find current node.
+         * String repr of an integer for array values.
+         * Always {@code ""} for root node.
+         * For array values it is only made when asked for, prefer {@link #index()} for them.
+         */
+        public @NotNull String name() {
+            if (name == null) {
+                name = Integer.toString(index);
+            }
+            return name;
+        }
+
+        /**
+         * Index of current node in parent array, or {@code -1} if parent is not an array.
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * Whether {@link #name()} equals to the chars. Keys that repeat in the input are not decoded again,
+         * and names of array values are not made, so comparing names this way allocates nothing.
+         */
+        public boolean nameEquals(@NotNull CharSequence chars) {
+            if (name != null) {
+                return name.contentEquals(chars);
+            }
+            int left = index;
+            int i = chars.length();
+            do {
+                if (--i < 0 || chars.charAt(i) != '0' + left % 10) {
+                    return false;
+                }
+                left /= 10;
+            } while (left != 0);
+            return i == 0;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (obj == this) return true;
+            if (obj == null || obj.getClass() != this.getClass()) return false;
+            var that = (NodeData) obj;
+            return Objects.equals(this.type, that.type) &&
+                    this.index == that.index &&
+                    (this.index != -1 || Objects.equals(this.name, that.name)) &&
+                    this.firstChar == that.firstChar;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, index == -1 ? name : index, firstChar);
+        }
+
+        @Contract(pure = true)
+        @Override
+        public @NotNull String toString() {
+            return "NodeData[" +
+                    "type=" + type + ", " +
+                    "name=" + name() + ", " +
+                    "firstChar=" + firstChar + ']';
+        }
+    }
+
+    /**
+     * Range of bytes of a value in file or byte array input, from {@code start} inclusive to {@code end} exclusive.
+     */
+    public record ValueRange(long start, long end) {
+        public long length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Represents JSON node
+     */
+    public interface Node {
+        /**
+         * Returns path to current node represented as List of {@link NodeData} objects.
+         */
+        @NotNull List<NodeData> getNodeData();
+
+        /**
+         * Read string repr of current node from the input. All child nodes will not appear in the stream
+         */
+        @NotNull String getValue();
+
+        /**
+         * Copies text of current node from the input to {@code out} as it is read, the same text
+         * {@link #getValue()} would return. Only a small part of the value is held in memory at any time,
+         * so values of any size may be written this way. All child nodes will not appear in the stream,
+         * and unless the value was already fetched, {@link #getValue()} can't be called afterwards.
+         * IO errors of {@code out} are wrapped in {@link RuntimeException}.
+         */
+        void writeValueTo(@NotNull Appendable out);
+
+        /**
+         * Same as {@link #writeValueTo(Appendable)}, writing value encoded as UTF-8.
+         * Stream is flushed, but not closed.
+         */
+        void writeValueTo(@NotNull OutputStream out);
+
+        /**
+         * Opens reader of the text of current node, the same text {@link #getValue()} would return.
+         * Strings, objects and arrays are read from the input as reader is read, so values of any size
+         * may be read this way. Objects and arrays are not validated. All child nodes will not appear in the stream.
+         * Reader is only valid until the stream moves on, and the rest of the value is skipped then,
+         * or when reader is closed.
+         */
+        @NotNull Reader openValueReader();
+
+        /**
+         * Opens reader of contents of a {@link NodeType#STRING} node, with escape sequences decoded
+         * as reader is read. Reader is only valid until the stream moves on, and the rest of the string
+         * is skipped then, or when reader is closed.
+         *
+         * @throws IllegalStateException if node is not a string
+         */
+        @NotNull Reader openStringContentReader();
+
+        /**
+         * Returns stream of direct children of this object or array, which are read from the same input
+         * as they are consumed, and values of which are skipped if they are not consumed.
+         * Paths of the children are relative: they start at this node, so child is at index {@code 1}.
+         * Stream ends at the closing bracket of this node, after which the value of this node is consumed.
+         * If the stream of this node moves on before that, the rest of the value is skipped.
+         * It is empty for other node types.
+         *
+         * @throws IllegalStateException if value of this node was already consumed
+         */
+        @NotNull Stream<Node> children();
+
+        /**
+         * Returns stream of all nodes inside this object or array, like {@link #children()}
+         * but with nodes of all depths, in the same order as the whole stream would have them.
+         *
+         * @throws IllegalStateException if value of this node was already consumed
+         */
+        @NotNull Stream<Node> descendants();
+
+        /**
+         * Finds bytes of current node in file or byte array input. Unless the value was fetched before,
+         * it is skipped to find its end, and none of child nodes will appear in the stream.
+         * {@link #getValue()} still works afterwards, by decoding the range.
+         * Range is kept by {@link #fetchFull()}, if it was found before.
+         *
+         * @throws UnsupportedOperationException if input is not a file or byte array
+         * @throws IllegalStateException         if value was consumed by a typed accessor, skipped or written out
+         */
+        @NotNull ValueRange valueRange();
+
+        /**
+         * Writes value of current node to the channel. For file or byte array input, bytes of the {@link #valueRange()}
+         * are written right from the input, without decoding. Any other input is written as
+         * {@link #writeValueTo(OutputStream)} does. IO errors of the channel are wrapped in {@link RuntimeException}.
+         */
+        void transferTo(@NotNull WritableByteChannel channel);
+
+        /**
+         * Reads integer value of a {@link NodeType#NUMBER} node. Number is parsed right from the input,
+         * without making a {@link String} of it. All child nodes will not appear in the stream,
+         * and {@link #getValue()} still returns text of the number.
+         *
+         * @throws IllegalStateException if node is not a number
+         * @throws NumberFormatException if number has fraction or exponent, or doesn't fit into {@code long}
+         */
+        long getLong();
+
+        /**
+         * Reads value of a {@link NodeType#NUMBER} node as the nearest double. Number is parsed right from the input,
+         * without making a {@link String} of it. {@link #getValue()} still returns text of the number.
+         *
+         * @throws IllegalStateException if node is not a number
+         */
+        double getDouble();
+
+        /**
+         * Value of a {@link NodeType#BOOLEAN} node.
+         *
+         * @throws IllegalStateException if node is not a boolean
+         */
+        boolean getBoolean();
+
+        /**
+         * Reads contents of a {@link NodeType#STRING} node, with escape sequences decoded.
+         * If the string was not fetched with {@link #getValue()} before, it is decoded right from the input,
+         * and {@link #getValue()} afterwards returns it encoded back to JSON, which may differ in escapes
+         * from the input.
+         *
+         * @throws IllegalStateException if node is not a string
+         */
+        @NotNull String getString();
+
+        /**
          * Fetches the value using {@link #getValue()}
          * and builds copy of current Node object that is safe to use in outside context.
          */
         @NotNull Node fetchFull();
 
+        /**
+         * Skips value of current node without reading it. None of its child nodes will appear in the stream.
+         * Skipped object or array is only scanned for strings and brackets, nothing is allocated for its contents.
+         * After that, {@link #getValue()} throws {@link IllegalStateException}.
+         * Does nothing if the value was already fetched, which is always the case for literals
+         * {@code true}, {@code false} and {@code null}.
+         */
+        void skip();
+
+        /**
+         * Index of the document current node belongs to, counting from {@code 0}.
+         * Only input with multiple documents has nodes with index other than {@code 0}.
+         * Nodes of a split JSON Lines stream are indexed from the start of the whole input.
+         */
+        long documentIndex();
+
         /**
          * Last object in {@link #nodeData}. Represents metadata of current node itself.
          */
@@ -653,8 +1598,9 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
 
     /**
      * Make JSON {@link Stream} from inputStream using provided charset.
-     * Uses {@link BufferedReader} internally. If you need more granular configuration of it ot another reader,
-     * use {@link #jsonStream(Reader)}
+     * UTF-8 input is scanned as raw bytes, and only strings that are actually read get decoded.
+     * Any other charset is decoded with {@link InputStreamReader}.
+     * If you need more granular configuration of decoding, use {@link #jsonStream(Reader)}
      * For more information see documentation for {@link JsonStream}
      */
     public static @NotNull Stream<Node> jsonStream(
@@ -665,8 +1611,8 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
     }
 
     /**
-     * Make JSON {@link Stream} from a reader. Reader should support {@link Reader#mark(int)}.
-     * It is used for peaking one char ahead. The limitation may be lifted in the future.
+     * Make JSON {@link Stream} from a reader. Reader is read in chunks into internal buffer,
+     * so there is no need to wrap it with {@link BufferedReader}.
      * For more information see documentation for {@link JsonStream}
      */
     public static @NotNull Stream<Node> jsonStream(@NotNull Reader reader) {
@@ -682,7 +1628,7 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
             @NotNull InputStream inputStream,
             @NotNull Charset charset
     ) {
-        return new JsonStream(inputStream, charset);
+        return builder().spliterator(inputStream, charset);
     }
 
     /**
@@ -691,6 +1637,445 @@ public final class JsonStream implements Spliterator<JsonStream.Node> {
      * For more information see documentation for {@link JsonStream}
      */
     public static @NotNull Spliterator<Node> jsonSpliterator(@NotNull Reader reader) {
-        return new JsonStream(reader);
+        return builder().spliterator(reader);
+    }
+
+    /**
+     * Make JSON {@link Stream} from UTF-8 encoded file. File is memory mapped and parsed directly from the mapping,
+     * without any intermediate stream or buffer. Files over 2 GB are mapped in chunks.
+     * No file handle is held after this method returns.
+     * For more information see documentation for {@link JsonStream}
+     */
+    public static @NotNull Stream<Node> jsonStream(@NotNull Path path) {
+        return builder().stream(path);
+    }
+
+    /**
+     * Make JSON {@link Spliterator} from UTF-8 encoded file.
+     * Has same semantics as {@link #jsonStream(Path)}
+     * For more information see documentation for {@link JsonStream}
+     */
+    public static @NotNull Spliterator<Node> jsonSpliterator(@NotNull Path path) {
+        return builder().spliterator(path);
+    }
+
+    /**
+     * Make JSON {@link Stream} from UTF-8 encoded bytes. Array is not copied and should not be modified while in use.
+     * For more information see documentation for {@link JsonStream}
+     */
+    public static @NotNull Stream<Node> jsonStream(byte @NotNull [] bytes) {
+        return builder().stream(bytes);
+    }
+
+    /**
+     * Make JSON {@link Spliterator} from UTF-8 encoded bytes.
+     * Has same semantics as {@link #jsonStream(byte[])}
+     * For more information see documentation for {@link JsonStream}
+     */
+    public static @NotNull Spliterator<Node> jsonSpliterator(byte @NotNull [] bytes) {
+        return builder().spliterator(bytes);
+    }
+
+    /**
+     * Make {@link Stream} of only those nodes of UTF-8 encoded input, that match JSONPath,
+     * like {@code $.data[*].interestingData} or {@code $..id}. Path is matched while input is parsed,
+     * and values that can't contain matching nodes are skipped without emitting anything.
+     * See {@link Builder#select(String)} for supported paths.
+     * For more information see documentation for {@link JsonStream}
+     */
+    public static @NotNull Stream<Node> select(@NotNull InputStream inputStream, @NotNull String jsonPath) {
+        return builder().select(jsonPath).stream(inputStream, UTF_8);
+    }
+
+    /**
+     * Calls visitor for every value of the tokenizer, until its input ends.
+     * Visitor may skip contents of objects and arrays, which are then skipped by {@link JsonTokenizer#skipChildren()}.
+     */
+    public static void parse(@NotNull JsonTokenizer tokenizer, @NotNull JsonVisitor visitor) {
+        JsonTokenizer.Token token;
+        while ((token = tokenizer.nextToken()) != null) {
+            String key = tokenizer.currentKey();
+            switch (token) {
+                case START_OBJECT -> {
+                    if (visitor.startObject(key) == JsonVisitor.Action.SKIP) {
+                        tokenizer.skipChildren();
+                    }
+                }
+                case START_ARRAY -> {
+                    if (visitor.startArray(key) == JsonVisitor.Action.SKIP) {
+                        tokenizer.skipChildren();
+                    }
+                }
+                case END_OBJECT -> visitor.endObject();
+                case END_ARRAY -> visitor.endArray();
+                case STRING -> visitor.string(key, tokenizer.getText());
+                case NUMBER -> visitor.number(key, tokenizer.getText());
+                case BOOLEAN -> visitor.bool(key, tokenizer.getBoolean());
+                case NULL -> visitor.nullValue(key);
+            }
+        }
+    }
+
+    /**
+     * Calls visitor for every value of input using provided charset, like {@link #jsonStream(InputStream, Charset)}.
+     * See {@link #parse(JsonTokenizer, JsonVisitor)}.
+     */
+    public static void parse(@NotNull InputStream inputStream, @NotNull Charset charset, @NotNull JsonVisitor visitor) {
+        try (var tokenizer = builder().tokenizer(inputStream, charset)) {
+            parse(tokenizer, visitor);
+        }
+    }
+
+    /**
+     * Calls visitor for every value of the reader. See {@link #parse(JsonTokenizer, JsonVisitor)}.
+     */
+    public static void parse(@NotNull Reader reader, @NotNull JsonVisitor visitor) {
+        try (var tokenizer = builder().tokenizer(reader)) {
+            parse(tokenizer, visitor);
+        }
+    }
+
+    /**
+     * Calls visitor for every value of UTF-8 encoded file, which is memory mapped like in {@link #jsonStream(Path)}.
+     * See {@link #parse(JsonTokenizer, JsonVisitor)}.
+     */
+    public static void parse(@NotNull Path path, @NotNull JsonVisitor visitor) {
+        try (var tokenizer = builder().tokenizer(path)) {
+            parse(tokenizer, visitor);
+        }
+    }
+
+    /**
+     * Calls visitor for every value of UTF-8 encoded bytes. See {@link #parse(JsonTokenizer, JsonVisitor)}.
+     */
+    public static void parse(byte @NotNull [] bytes, @NotNull JsonVisitor visitor) {
+        try (var tokenizer = builder().tokenizer(bytes)) {
+            parse(tokenizer, visitor);
+        }
+    }
+
+    /**
+     * Makes {@link Flow.Publisher} of the nodes of the stream, which are {@link Node#fetchFull() fetched},
+     * so they may be passed to other threads. Stream is parsed on virtual threads if the runtime has them,
+     * and on daemon threads otherwise. See {@link #publisher(Stream, Executor)}.
+     */
+    public static @NotNull Flow.Publisher<Node> publisher(@NotNull Stream<Node> nodes) {
+        return publisher(nodes, BackgroundThreads.EXECUTOR);
+    }
+
+    /**
+     * Makes {@link Flow.Publisher} of the nodes of the stream, which are {@link Node#fetchFull() fetched},
+     * so they may be passed to other threads. Stream is only parsed as far as the subscriber requested,
+     * by tasks of the executor, and nothing is buffered. Cancelling the subscription stops parsing
+     * before the next node. Stream can only be consumed once, so the publisher only takes one subscriber.
+     * Stream is closed when it ends, fails, or the subscription is cancelled.
+     */
+    public static @NotNull Flow.Publisher<Node> publisher(@NotNull Stream<Node> nodes, @NotNull Executor executor) {
+        return new NodePublisher(nodes, executor);
+    }
+
+    /**
+     * Maps the nodes of the stream that pass the filter on worker threads, which are virtual if the runtime
+     * has them. The stream is parsed and filtered by the thread that consumes the results, and function gets
+     * {@link Node#fetchFull() fetched} nodes. Parsing only runs ahead of the consumer by a window of
+     * {@code 2 * parallelism} nodes, so memory stays bounded. <pre><code>
+     * try (var stream = JsonStream.builder().stream(path);
+     *      var objects = JsonStream.parallelMap(stream, node -> node.getNodeData().size() == 2,
+     *              node -> new JSONObject(node.getValue()), 8, true)) {
+     *     objects.forEach(this::process);
+     * }
+     * </code></pre>
+     * Closing returned stream closes the stream of nodes.
+     *
+     * @param parallelism maximum number of nodes mapped at the same time
+     * @param ordered     if results are returned in the order of the nodes, rather than as soon as they are ready
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public static <R> @NotNull Stream<R> parallelMap(@NotNull Stream<Node> nodes,
+                                                     @NotNull Predicate<? super Node> filter,
+                                                     @NotNull Function<? super Node, ? extends R> function,
+                                                     int parallelism, boolean ordered) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism is " + parallelism + ", should be positive");
+        }
+        var mapper = new ParallelMapper<R>(nodes.spliterator(), filter, function, parallelism, ordered,
+                BackgroundThreads.EXECUTOR);
+        return StreamSupport.stream(mapper, false).onClose(nodes::close);
+    }
+
+    /**
+     * Start configuring JSON stream with options beyond the defaults of {@code jsonStream} methods.
+     */
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Configuration of JSON stream. Options that don't apply to the kind of input are ignored.
+     * Streams made by the builder should be closed, to release resources of the options, like background threads.
+     */
+    public static final class Builder {
+        private boolean structuralIndex = false;
+        private boolean jsonLines = false;
+        private boolean concatenated = false;
+        private @Nullable List<String> splitArray = null;
+        private @Nullable PathAutomaton select = null;
+        private boolean readAhead = false;
+
+        private Builder() {
+        }
+
+        /**
+         * Build index of brackets of the input on a background thread, while input is parsed.
+         * Skipping a value then costs a walk over brackets in it, instead of a scan over all of its bytes.
+         * Values are skipped by {@link Node#skip()}, {@link Node#valueRange()}, {@link #select(String)}
+         * and {@link #splitArray(String...)}, and when streams of {@link Node#children()} or value readers
+         * are left before the end. Only applies to file and byte array inputs. Off by default.
+         */
+        public @NotNull Builder structuralIndex(boolean structuralIndex) {
+            this.structuralIndex = structuralIndex;
+            return this;
+        }
+
+        /**
+         * Read input on a background thread, into a ring of buffers ahead of the parser,
+         * so waiting for a slow source, like a network mount or decompression, overlaps with parsing.
+         * Only applies to {@link InputStream} and {@link Reader} inputs, which are still not closed by the stream.
+         * Streams and tokenizers should be closed with this option, to stop reading ahead. Off by default.
+         */
+        public @NotNull Builder readAhead(boolean readAhead) {
+            this.readAhead = readAhead;
+            return this;
+        }
+
+        /**
+         * Read input in <a href="https://jsonlines.org/">JSON Lines</a> format: a sequence of documents,
+         * each on its own line. Root node of every document is named "".
+         * Stream of a file or byte array input in this mode may be processed in parallel,
+         * it is split at line breaks and each part gets its own parser.
+         * Structural index is not used by parts of a split stream. Off by default.
+         */
+        public @NotNull Builder jsonLines(boolean jsonLines) {
+            this.jsonLines = jsonLines;
+            return this;
+        }
+
+        /**
+         * Read input as a sequence of concatenated documents, that may be separated by any whitespace, or nothing at
+         * all if that is unambiguous, like {@code {"a":1}{"a":2} 3 4}. Root node of every document is named "".
+         * Unlike JSON Lines, such input can't be split for parallel processing. Ignored if JSON Lines is on.
+         * Off by default.
+         */
+        public @NotNull Builder concatenated(boolean concatenated) {
+            this.concatenated = concatenated;
+            return this;
+        }
+
+        /**
+         * Only stream descendants of the array at the path, and allow processing them in parallel.
+         * Path consists of keys of objects and indexes of arrays leading from the root to the array,
+         * it is empty for the root array. Everything outside the array is skipped, and if there is no array
+         * at the path, stream is empty. {@link NodeData} of streamed nodes still starts from the root.<br>
+         * Parallel stream of a file or byte array input is split between elements of the array,
+         * and each part gets its own parser. Boundaries of elements are found by parallel scans of the input,
+         * so parsing of parts doesn't wait for each other. Elements are emitted in order,
+         * unless stream is made {@link Stream#unordered() unordered}. Can't be combined with JSON Lines.
+         */
+        public @NotNull Builder splitArray(@NotNull String @NotNull ... path) {
+            this.splitArray = List.of(path);
+            return this;
+        }
+
+        /**
+         * Only stream nodes that match <a href="https://github.com/json-path/JsonPath">JSONPath</a>.
+         * Values of nodes, that neither match nor may have matching descendants, are skipped right away.
+         * If matching node can't have matching descendants, and its value was not fetched, it is skipped
+         * after the node is processed. Path is matched against {@link NodeData} of the node
+         * and is applied to every document of multi-document input. As usual, fetching value of a matching node
+         * consumes its descendants, even if they match too.<br>
+         * Only paths that don't depend on values are supported: names ({@code $.a}, {@code $['a','b']}),
+         * wildcards ({@code $.*}, {@code $[*]}), non-negative indexes and slices ({@code $[0,2]}, {@code $[1:3]})
+         * and deep scan ({@code $..a}). Can't be combined with {@link #splitArray(String...)}.
+         *
+         * @throws com.jayway.jsonpath.InvalidPathException if path is not valid JSONPath
+         * @throws IllegalArgumentException                 if path has filters, functions or negative indexes
+         */
+        public @NotNull Builder select(@NotNull String jsonPath) {
+            this.select = PathAutomaton.compile(jsonPath);
+            return this;
+        }
+
+        /**
+         * Same as {@link JsonStream#jsonStream(InputStream, Charset)}, with options of this builder.
+         */
+        public @NotNull Stream<Node> stream(@NotNull InputStream inputStream, @NotNull Charset charset) {
+            return stream(input(inputStream, charset));
+        }
+
+        /**
+         * Same as {@link JsonStream#jsonSpliterator(InputStream, Charset)}, with options of this builder.
+         */
+        public @NotNull Spliterator<Node> spliterator(@NotNull InputStream inputStream, @NotNull Charset charset) {
+            return spliterator(input(inputStream, charset));
+        }
+
+        /**
+         * Same as {@link JsonStream#jsonStream(Reader)}, with options of this builder.
+         */
+        public @NotNull Stream<Node> stream(@NotNull Reader reader) {
+            return stream(input(reader));
+        }
+
+        /**
+         * Same as {@link JsonStream#jsonSpliterator(Reader)}, with options of this builder.
+         */
+        public @NotNull Spliterator<Node> spliterator(@NotNull Reader reader) {
+            return spliterator(input(reader));
+        }
+
+        /**
+         * Same as {@link JsonStream#jsonStream(Path)}, with options of this builder.
+         */
+        public @NotNull Stream<Node> stream(@NotNull Path path) {
+            return stream(ChunkedBytes.map(path));
+        }
+
+        /**
+         * Same as {@link JsonStream#jsonSpliterator(Path)}, with options of this builder.
+         */
+        public @NotNull Spliterator<Node> spliterator(@NotNull Path path) {
+            return spliterator(ChunkedBytes.map(path));
+        }
+
+        /**
+         * Same as {@link JsonStream#jsonStream(byte[])}, with options of this builder.
+         */
+        public @NotNull Stream<Node> stream(byte @NotNull [] bytes) {
+            return stream(ChunkedBytes.wrap(bytes));
+        }
+
+        /**
+         * Same as {@link JsonStream#jsonSpliterator(byte[])}, with options of this builder.
+         */
+        public @NotNull Spliterator<Node> spliterator(byte @NotNull [] bytes) {
+            return spliterator(ChunkedBytes.wrap(bytes));
+        }
+
+        /**
+         * Makes pull parser of the file, that doesn't make any nodes. Only {@link #structuralIndex(boolean)},
+         * {@link #jsonLines(boolean)} and {@link #concatenated(boolean)} options apply to it,
+         * and {@link #readAhead(boolean)} to the stream and reader variants.
+         *
+         * @throws IllegalStateException if {@link #splitArray(String...)} or {@link #select(String)} is set
+         */
+        public @NotNull JsonTokenizer tokenizer(@NotNull Path path) {
+            return tokenizer(input(ChunkedBytes.map(path)));
+        }
+
+        /**
+         * Same as {@link #tokenizer(Path)}, for a byte array of UTF-8 JSON.
+         */
+        public @NotNull JsonTokenizer tokenizer(byte @NotNull [] bytes) {
+            return tokenizer(input(ChunkedBytes.wrap(bytes)));
+        }
+
+        /**
+         * Same as {@link #tokenizer(Path)}, for a stream of JSON in the charset.
+         */
+        public @NotNull JsonTokenizer tokenizer(@NotNull InputStream inputStream, @NotNull Charset charset) {
+            return tokenizer(input(inputStream, charset));
+        }
+
+        /**
+         * Same as {@link #tokenizer(Path)}, for a reader of JSON.
+         */
+        public @NotNull JsonTokenizer tokenizer(@NotNull Reader reader) {
+            return tokenizer(input(reader));
+        }
+
+        /**
+         * Makes non-blocking tokenizer of UTF-8 input that is fed to it in chunks.
+         * Only {@link #jsonLines(boolean)} and {@link #concatenated(boolean)} options apply to it,
+         * {@link #structuralIndex(boolean)} and {@link #readAhead(boolean)} are ignored.
+         *
+         * @throws IllegalStateException if {@link #splitArray(String...)} or {@link #select(String)} is set
+         */
+        public @NotNull JsonFeeder feeder() {
+            if (splitArray != null || select != null) {
+                throw tokenizerOptions();
+            }
+            return new JsonFeeder(documents() != Documents.SINGLE);
+        }
+
+        private @NotNull JsonTokenizer tokenizer(@NotNull JsonInput input) {
+            if (splitArray != null || select != null) {
+                input.close();
+                throw tokenizerOptions();
+            }
+            return new JsonTokenizer(input, documents() != Documents.SINGLE);
+        }
+
+        private static @NotNull IllegalStateException tokenizerOptions() {
+            return new IllegalStateException("Tokenizer can't select nodes or split by array");
+        }
+
+        private @NotNull Stream<Node> stream(@NotNull ChunkedBytes bytes) {
+            var documents = documents();
+            var input = input(bytes);
+            var whole = new JsonStream(input, documents);
+            return StreamSupport.stream(spliterator(bytes, input, whole), false).onClose(whole::close);
+        }
+
+        private @NotNull Spliterator<Node> spliterator(@NotNull ChunkedBytes bytes) {
+            var documents = documents();
+            var input = input(bytes);
+            return spliterator(bytes, input, new JsonStream(input, documents));
+        }
+
+        private @NotNull JsonInput input(@NotNull InputStream inputStream, @NotNull Charset charset) {
+            InputStream source = readAhead ? ReadAhead.inputStream(inputStream) : inputStream;
+            return UTF_8.equals(charset)
+                    ? new Utf8StreamInput(source, readAhead)
+                    : new ReaderInput(new InputStreamReader(source, charset), readAhead);
+        }
+
+        private @NotNull JsonInput input(@NotNull Reader reader) {
+            return readAhead ? new ReaderInput(ReadAhead.reader(reader), true) : new ReaderInput(reader, false);
+        }
+
+        private @NotNull Stream<Node> stream(@NotNull JsonInput input) {
+            return StreamSupport.stream(spliterator(input), false).onClose(input::close);
+        }
+
+        /**
+         * Stream of input that can only be read sequentially.
+         */
+        private @NotNull Spliterator<Node> spliterator(@NotNull JsonInput input) {
+            var whole = new JsonStream(input, documents());
+            return splitArray == null ? select(whole) : new ArrayElementSpliterator(null, null, whole, splitArray);
+        }
+
+        private @NotNull Spliterator<Node> select(@NotNull JsonStream whole) {
+            return select == null ? whole : new SelectingSpliterator(select, whole);
+        }
+
+        private @NotNull Documents documents() {
+            if (jsonLines && splitArray != null) {
+                throw new IllegalStateException("JSON Lines input can't be split by array");
+            }
+            if (select != null && splitArray != null) {
+                throw new IllegalStateException("Selected input can't be split by array");
+            }
+            return jsonLines ? Documents.LINES : concatenated ? Documents.CONCATENATED : Documents.SINGLE;
+        }
+
+        private @NotNull Utf8ChunkedInput input(@NotNull ChunkedBytes bytes) {
+            return new Utf8ChunkedInput(bytes, 0, bytes.size(), structuralIndex ? new StructuralIndex(bytes) : null);
+        }
+
+        private @NotNull Spliterator<Node> spliterator(@NotNull ChunkedBytes bytes, @NotNull Utf8ChunkedInput input,
+                                                       @NotNull JsonStream whole) {
+            return splitArray == null ? select(whole) : new ArrayElementSpliterator(bytes, input, whole, splitArray);
+        }
     }
 }
@@ -0,0 +1,289 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.util.Arrays;
+
+/**
+ * Pull parser of JSON, that returns one token at a time without allocating anything per token.
+ * Keys are canonical strings of the input, and contents of strings and numbers are only read when they are asked for,
+ * into a buffer that is reused for every token. Made by {@link JsonStream.Builder}, and should be closed.<br>
+ * Typical loop looks like this: <pre><code>
+ * try (var tokenizer = JsonStream.builder().tokenizer(path)) {
+ *     JsonTokenizer.Token token;
+ *     while ((token = tokenizer.nextToken()) != null) {
+ *         if (token == JsonTokenizer.Token.NUMBER && "price".equals(tokenizer.currentKey())) {
+ *             total += tokenizer.getDouble();
+ *         }
+ *     }
+ * }
+ * </code></pre>
+ */
+public final class JsonTokenizer implements AutoCloseable {
+    private final @NotNull JsonInput input;
+    private final boolean multipleDocuments;
+    private final @NotNull StringBuilder text = new StringBuilder();
+    /**
+     * Whether each open container is an object, from the root.
+     */
+    private boolean[] objects = new boolean[16];
+    /**
+     * Number of values started in each open container.
+     */
+    private int[] counts = new int[16];
+    /**
+     * Key of the last value started at each depth, {@code null} in arrays.
+     */
+    private @Nullable String[] keys = new String[17];
+    private int open = 0;
+    private int depth = 0;
+    private @Nullable Token token = null;
+    private boolean expectComma = false;
+    private boolean documentRead = false;
+    private boolean valueEaten = true;
+    private boolean textRead = false;
+    private char firstChar;
+
+    JsonTokenizer(@NotNull JsonInput input, boolean multipleDocuments) {
+        this.input = input;
+        this.multipleDocuments = multipleDocuments;
+    }
+
+    /**
+     * Kind of token.
+     */
+    public enum Token {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        /**
+         * Next token is not complete in the input fed so far. Only returned by {@link JsonFeeder}.
+         */
+        NEED_MORE_INPUT
+    }
+
+    /**
+     * Moves to the next token. Contents of the previous string or number are skipped if they were not read.
+     *
+     * @return the token, or {@code null} at the end of input
+     * @throws IllegalStateException if input JSON is invalid
+     */
+    public @Nullable Token nextToken() {
+        if (!valueEaten) {
+            if (token == Token.STRING) {
+                input.skipString();
+            } else {
+                input.skipNumber(firstChar);
+            }
+            valueEaten = true;
+        }
+        textRead = false;
+        int c = input.readNonWhitespace();
+        if (open == 0) {
+            if (c == JsonInput.EOF && (documentRead || multipleDocuments)) {
+                return token = null;
+            }
+            if (documentRead && !multipleDocuments) {
+                throw input.illegalState("Unexpected char '" + (char) c + "' after the end of document");
+            }
+            documentRead = true;
+            depth = 0;
+            keys[0] = null;
+            return startValue(c);
+        }
+        if (c == '}' || c == ']') {
+            boolean object = objects[open - 1];
+            if (c != (object ? '}' : ']')) {
+                throw input.illegalState("Unexpected '" + (char) c + "'");
+            }
+            depth = --open;
+            expectComma = true;
+            return token = object ? Token.END_OBJECT : Token.END_ARRAY;
+        }
+        if (expectComma) {
+            if (c != ',') {
+                throw unexpected(c);
+            }
+            c = input.readNonWhitespace();
+        }
+        depth = open;
+        counts[open - 1]++;
+        if (objects[open - 1]) {
+            if (c != '"') {
+                throw unexpected(c);
+            }
+            keys[depth] = input.readKey();
+            if (input.readNonWhitespace() != ':') {
+                throw input.illegalState("non':' character after object key");
+            }
+            c = input.readNonWhitespace();
+        } else {
+            keys[depth] = null;
+        }
+        return startValue(c);
+    }
+
+    private @NotNull Token startValue(int c) {
+        expectComma = true;
+        token = switch (c) {
+            case '{' -> Token.START_OBJECT;
+            case '[' -> Token.START_ARRAY;
+            case '"' -> Token.STRING;
+            case '1', '2', '3', '4', '5', '6', '7', '8', '9', '0', '-' -> Token.NUMBER;
+            case 't', 'f' -> Token.BOOLEAN;
+            case 'n' -> Token.NULL;
+            default -> throw unexpected(c);
+        };
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> {
+                if (open == objects.length) {
+                    objects = Arrays.copyOf(objects, open * 2);
+                    counts = Arrays.copyOf(counts, open * 2);
+                    keys = Arrays.copyOf(keys, open * 2 + 1);
+                }
+                objects[open] = token == Token.START_OBJECT;
+                counts[open] = 0;
+                open++;
+                expectComma = false;
+            }
+            case STRING, NUMBER -> {
+                firstChar = (char) c;
+                valueEaten = false;
+            }
+            default -> {
+                firstChar = (char) c;
+                input.skipLiteral(firstChar);
+            }
+        }
+        return token;
+    }
+
+    private @NotNull IllegalStateException unexpected(int c) {
+        return input.illegalState(c == JsonInput.EOF ? "Unexpected EOF" : "Unexpected char '" + (char) c + "'");
+    }
+
+    /**
+     * Current token, {@code null} before the first one and at the end of input.
+     */
+    public @Nullable Token currentType() {
+        return token;
+    }
+
+    /**
+     * Number of containers around the current token. Root value is at depth {@code 0},
+     * and start and end of a container are at the same depth.
+     */
+    public int currentDepth() {
+        return depth;
+    }
+
+    /**
+     * Key of the current value, or of the container that ended, if it is inside an object.
+     *
+     * @return the key, or {@code null} if it is not inside an object
+     */
+    public @Nullable String currentKey() {
+        return keys[depth];
+    }
+
+    /**
+     * Index of the current value, or of the container that ended, if it is inside an array.
+     *
+     * @return the index, or {@code -1} if it is not inside an array
+     */
+    public int currentIndex() {
+        return depth > 0 && !objects[depth - 1] ? counts[depth - 1] - 1 : -1;
+    }
+
+    /**
+     * Returns contents of the current string without quotes and escapes, text of the current number,
+     * or the literal of {@code true}, {@code false} or {@code null}.
+     * Returned sequence is reused, and is only valid until the next token.
+     *
+     * @throws IllegalStateException if current token is not a value
+     */
+    public @NotNull CharSequence getText() {
+        if (token == null) {
+            throw new IllegalStateException("There is no current token");
+        }
+        return switch (token) {
+            case STRING, NUMBER -> {
+                if (!textRead) {
+                    text.setLength(0);
+                    if (token == Token.STRING) {
+                        input.readStringContent(text);
+                    } else {
+                        input.readNumber(firstChar, text);
+                    }
+                    valueEaten = true;
+                    textRead = true;
+                }
+                yield text;
+            }
+            case BOOLEAN -> firstChar == 't' ? "true" : "false";
+            case NULL -> "null";
+            default -> throw new IllegalStateException("Token is " + token + ", not a value");
+        };
+    }
+
+    /**
+     * Parses the current number.
+     *
+     * @throws IllegalStateException if current token is not a number
+     * @throws NumberFormatException if number is not an integer, or doesn't fit into {@code long}
+     */
+    public long getLong() {
+        requireToken(Token.NUMBER);
+        return JsonNumbers.parseLong(getText());
+    }
+
+    /**
+     * Parses the current number into the nearest double.
+     *
+     * @throws IllegalStateException if current token is not a number
+     */
+    public double getDouble() {
+        requireToken(Token.NUMBER);
+        return JsonNumbers.parseDouble(getText());
+    }
+
+    /**
+     * @throws IllegalStateException if current token is not a boolean
+     */
+    public boolean getBoolean() {
+        requireToken(Token.BOOLEAN);
+        return firstChar == 't';
+    }
+
+    private void requireToken(@NotNull Token type) {
+        if (token != type) {
+            throw new IllegalStateException("Token is " + token + ", not " + type);
+        }
+    }
+
+    /**
+     * Skips everything inside the object or array which start is the current token, without tokenizing it.
+     * The end of that container becomes the current token. Does nothing for other tokens.
+     */
+    public void skipChildren() {
+        if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+            input.skipContainer();
+            open--;
+            expectComma = true;
+            token = token == Token.START_OBJECT ? Token.END_OBJECT : Token.END_ARRAY;
+        }
+    }
+
+    /**
+     * Releases resources of the tokenizer. Closing {@code InputStream} or {@code Reader} is still callers responsibility.
+     */
+    @Override
+    public void close() {
+        input.close();
+    }
+}
@@ -0,0 +1,57 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Callbacks for every value of JSON, called by {@link JsonStream#parse(JsonTokenizer, JsonVisitor)} in input order.
+ * Unlike stream of nodes, it also tells where objects and arrays end, so values may be aggregated in one pass.
+ * Every callback gets key of the value in its object, or {@code null} if value is not inside an object.
+ * All methods do nothing by default, so only the interesting ones need to be implemented.
+ */
+public interface JsonVisitor {
+    /**
+     * What to do with contents of an object or array that started.
+     */
+    enum Action {
+        /**
+         * Visit the contents.
+         */
+        CONTINUE,
+        /**
+         * Skip the contents without parsing them. End of the container is not visited either.
+         */
+        SKIP
+    }
+
+    default @NotNull Action startObject(@Nullable String key) {
+        return Action.CONTINUE;
+    }
+
+    default void endObject() {
+    }
+
+    default @NotNull Action startArray(@Nullable String key) {
+        return Action.CONTINUE;
+    }
+
+    default void endArray() {
+    }
+
+    /**
+     * @param text text of the number as it is in the input. It is reused, and only valid during the call.
+     */
+    default void number(@Nullable String key, @NotNull CharSequence text) {
+    }
+
+    /**
+     * @param value contents of the string without quotes and escapes. It is reused, and only valid during the call.
+     */
+    default void string(@Nullable String key, @NotNull CharSequence value) {
+    }
+
+    default void bool(@Nullable String key, boolean value) {
+    }
+
+    default void nullValue(@Nullable String key) {
+    }
+}
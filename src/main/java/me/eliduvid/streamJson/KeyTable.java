@@ -0,0 +1,101 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Symbol table of object keys of one input, so the same key is only decoded once, and every later occurrence
+ * of it is found by its raw units and returns the same canonical {@link String}.<br>
+ * Only short keys without escapes are looked up. Table stops growing when it is half full,
+ * so inputs that use arbitrary data as keys don't fill the memory with it.
+ */
+final class KeyTable {
+    static final int MAX_KEY_LENGTH = 64;
+    private static final int CAPACITY = 1024;
+    private static final int MAX_SIZE = CAPACITY / 2;
+
+    private final @Nullable String @NotNull [] keys = new String[CAPACITY];
+    private final byte @Nullable [] @NotNull [] utf8 = new byte[CAPACITY][];
+    private final int @NotNull [] hashes = new int[CAPACITY];
+    private int size = 0;
+
+    static int hash(int hash, int unit) {
+        return 31 * hash + unit;
+    }
+
+    /**
+     * Returns key which UTF-8 encoding is in the buffer from {@code from} to {@code to}.
+     *
+     * @param hash {@link #hash(int, int)} of all bytes of the key
+     */
+    @NotNull String get(@NotNull ByteBuffer buffer, int from, int to, int hash) {
+        int slot = hash & CAPACITY - 1;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && equals(utf8[slot], buffer, from, to)) {
+                return key;
+            }
+            slot = slot + 1 & CAPACITY - 1;
+        }
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        key = new String(bytes, UTF_8);
+        if (size < MAX_SIZE) {
+            keys[slot] = key;
+            utf8[slot] = bytes;
+            hashes[slot] = hash;
+            size++;
+        }
+        return key;
+    }
+
+    /**
+     * Returns key which chars are in the array from {@code from} to {@code to}.
+     *
+     * @param hash {@link #hash(int, int)} of all chars of the key
+     */
+    @NotNull String get(char @NotNull [] chars, int from, int to, int hash) {
+        int slot = hash & CAPACITY - 1;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && equals(key, chars, from, to)) {
+                return key;
+            }
+            slot = slot + 1 & CAPACITY - 1;
+        }
+        key = new String(chars, from, to - from);
+        if (size < MAX_SIZE) {
+            keys[slot] = key;
+            hashes[slot] = hash;
+            size++;
+        }
+        return key;
+    }
+
+    private static boolean equals(byte @Nullable [] bytes, @NotNull ByteBuffer buffer, int from, int to) {
+        if (bytes == null || bytes.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buffer.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(@NotNull String key, char @NotNull [] chars, int from, int to) {
+        if (key.length() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != chars[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
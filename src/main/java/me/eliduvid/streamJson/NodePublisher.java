@@ -0,0 +1,131 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.util.Spliterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.Stream;
+
+/**
+ * Publisher of fetched nodes of a stream, which is only parsed as far as the demand of its subscriber goes.
+ * Nodes are parsed and handed over by tasks of the executor, one task at a time, so no node is ever buffered.
+ * Stream may only be consumed once, so the publisher only takes one subscriber. Stream is closed when it ends,
+ * fails, or the subscription is cancelled.
+ */
+final class NodePublisher implements Flow.Publisher<JsonStream.Node> {
+    private final @NotNull Stream<JsonStream.Node> nodes;
+    private final @NotNull Executor executor;
+    private final @NotNull AtomicBoolean subscribed = new AtomicBoolean();
+
+    NodePublisher(@NotNull Stream<JsonStream.Node> nodes, @NotNull Executor executor) {
+        this.nodes = nodes;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(@NotNull Flow.Subscriber<? super JsonStream.Node> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Publisher of a stream only takes one subscriber"));
+            return;
+        }
+        var subscription = new NodeSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class NodeSubscription implements Flow.Subscription {
+        private final @NotNull Flow.Subscriber<? super JsonStream.Node> subscriber;
+        private final @NotNull AtomicLong demand = new AtomicLong();
+        /**
+         * Number of times the drain was asked for, so only one task runs it and none of the requests are missed.
+         */
+        private final @NotNull AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile @Nullable Throwable invalidRequest = null;
+        /**
+         * Only used by the drain.
+         */
+        private @Nullable Spliterator<JsonStream.Node> spliterator = null;
+        private boolean done = false;
+
+        private NodeSubscription(@NotNull Flow.Subscriber<? super JsonStream.Node> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " nodes, should be positive");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    cancelled = true;
+                    nodes.close();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    emit();
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            try {
+                if (spliterator == null) {
+                    spliterator = nodes.spliterator();
+                }
+                while (!cancelled && invalidRequest == null && demand.get() > 0) {
+                    if (!spliterator.tryAdvance(node -> subscriber.onNext(node.fetchFull()))) {
+                        done = true;
+                        nodes.close();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+                }
+                if (invalidRequest != null) {
+                    done = true;
+                    nodes.close();
+                    subscriber.onError(invalidRequest);
+                } else if (cancelled) {
+                    done = true;
+                    nodes.close();
+                }
+            } catch (Throwable e) {
+                done = true;
+                nodes.close();
+                subscriber.onError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Results of a function applied on worker threads to the fetched nodes of a stream that pass the filter.
+ * Stream is parsed and filtered by the thread that takes the results, as far as the window of nodes
+ * that are mapped or waiting to be taken allows, so memory stays bounded however long the stream is.
+ * At most {@code parallelism} nodes are mapped at a time. Results are taken in the order of the nodes,
+ * or in the order they are ready.
+ */
+final class ParallelMapper<R> implements Spliterator<R> {
+    private final @NotNull Spliterator<JsonStream.Node> nodes;
+    private final @NotNull Predicate<? super JsonStream.Node> filter;
+    private final @NotNull Function<? super JsonStream.Node, ? extends R> function;
+    private final @NotNull Executor executor;
+    private final boolean ordered;
+    private final int window;
+    private final @NotNull Semaphore running;
+    /**
+     * Mapping of the nodes in the window, in the order of the nodes. Only used if ordered.
+     */
+    private final @NotNull ArrayDeque<CompletableFuture<R>> mapping = new ArrayDeque<>();
+    /**
+     * Mappings of the nodes in the window that are done, in the order they are done. Only used if not ordered.
+     */
+    private final @NotNull BlockingQueue<CompletableFuture<R>> done = new LinkedBlockingQueue<>();
+    private int inWindow = 0;
+    private boolean nodesEnded = false;
+
+    ParallelMapper(@NotNull Spliterator<JsonStream.Node> nodes, @NotNull Predicate<? super JsonStream.Node> filter,
+                   @NotNull Function<? super JsonStream.Node, ? extends R> function, int parallelism,
+                   boolean ordered, @NotNull Executor executor) {
+        this.nodes = nodes;
+        this.filter = filter;
+        this.function = function;
+        this.executor = executor;
+        this.ordered = ordered;
+        // Slow node at the head of the window shouldn't stop the workers, so there is room to map past it
+        this.window = parallelism * 2;
+        this.running = new Semaphore(parallelism);
+    }
+
+    @Override
+    public boolean tryAdvance(@NotNull Consumer<? super R> action) {
+        while (!nodesEnded && inWindow < window) {
+            if (!nodes.tryAdvance(this::submit)) {
+                nodesEnded = true;
+            }
+        }
+        if (inWindow == 0) {
+            return false;
+        }
+        CompletableFuture<R> next;
+        if (ordered) {
+            next = mapping.poll();
+        } else {
+            try {
+                next = done.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        inWindow--;
+        R result;
+        try {
+            result = next.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        action.accept(result);
+        return true;
+    }
+
+    private void submit(@NotNull JsonStream.Node node) {
+        if (!filter.test(node)) {
+            return;
+        }
+        JsonStream.Node fetched = node.fetchFull();
+        var future = new CompletableFuture<R>();
+        executor.execute(() -> {
+            running.acquireUninterruptibly();
+            try {
+                future.complete(function.apply(fetched));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                running.release();
+                if (!ordered) {
+                    done.add(future);
+                }
+            }
+        });
+        if (ordered) {
+            mapping.add(future);
+        }
+        inWindow++;
+    }
+
+    @Override
+    public @Nullable Spliterator<R> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ordered ? ORDERED : 0;
+    }
+}
@@ -0,0 +1,257 @@
+package me.eliduvid.streamJson;
+
+import com.jayway.jsonpath.JsonPath;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * JSONPath compiled into a nondeterministic automaton, that is run over the path of {@link JsonStream}
+ * as nodes are pushed. State {@code i} means that first {@code i} steps of the path matched,
+ * and set of states of a node is a bit mask, computed from the mask of its parent.
+ * Node matches the path if its mask has the final state, and no descendant of it may match if the mask
+ * has no other state.<br>
+ * Syntax is validated by {@link JsonPath#compile}, but only part of it can be matched without values:
+ * names, wildcards, non-negative indexes and slices, and deep scan. Filters and functions are not supported.
+ */
+final class PathAutomaton {
+    private final @NotNull List<Step> steps;
+
+    private PathAutomaton(@NotNull List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * @throws com.jayway.jsonpath.InvalidPathException if path is not valid JSONPath
+     * @throws IllegalArgumentException                 if path can't be matched while streaming
+     */
+    static @NotNull PathAutomaton compile(@NotNull String jsonPath) {
+        JsonPath.compile(jsonPath);
+        List<Step> steps = new Parser(jsonPath.startsWith("$") ? jsonPath : "$." + jsonPath).parse();
+        if (steps.size() >= Long.SIZE) {
+            throw new IllegalArgumentException("Path is too long: " + jsonPath);
+        }
+        return new PathAutomaton(steps);
+    }
+
+    /**
+     * States of the root node of a document.
+     */
+    long rootStates() {
+        return 1;
+    }
+
+    /**
+     * States of a node which parent has {@code parentStates}.
+     */
+    long childStates(long parentStates, @NotNull JsonStream.NodeData child, @NotNull JsonStream.NodeType parentType) {
+        long states = 0;
+        boolean inArray = parentType == JsonStream.NodeType.ARRAY;
+        for (long left = parentStates & ~finalState(); left != 0; left &= left - 1) {
+            int i = Long.numberOfTrailingZeros(left);
+            Step step = steps.get(i);
+            if (step.deep) {
+                states |= 1L << i;
+            }
+            if (step.selector.matches(child, inArray)) {
+                states |= 1L << i + 1;
+            }
+        }
+        return states;
+    }
+
+    boolean matches(long states) {
+        return (states & finalState()) != 0;
+    }
+
+    /**
+     * Whether any descendant of a node with these states may match.
+     */
+    boolean mayMatchBelow(long states) {
+        return (states & ~finalState()) != 0;
+    }
+
+    private long finalState() {
+        return 1L << steps.size();
+    }
+
+    /**
+     * One step of the path, that matches children of a node, or all descendants of it if {@code deep}.
+     */
+    private record Step(boolean deep, @NotNull Selector selector) {
+    }
+
+    private sealed interface Selector {
+        boolean matches(@NotNull JsonStream.NodeData child, boolean inArray);
+    }
+
+    private record Wildcard() implements Selector {
+        @Override
+        public boolean matches(@NotNull JsonStream.NodeData child, boolean inArray) {
+            return true;
+        }
+    }
+
+    private record Names(@NotNull Set<String> names) implements Selector {
+        @Override
+        public boolean matches(@NotNull JsonStream.NodeData child, boolean inArray) {
+            return !inArray && names.contains(child.name());
+        }
+    }
+
+    private record Indexes(int @NotNull [] indexes) implements Selector {
+        @Override
+        public boolean matches(@NotNull JsonStream.NodeData child, boolean inArray) {
+            if (!inArray) {
+                return false;
+            }
+            int index = child.index();
+            for (int i : indexes) {
+                if (i == index) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Indexes from {@code start} inclusive to {@code end} exclusive.
+     */
+    private record Slice(int start, int end) implements Selector {
+        @Override
+        public boolean matches(@NotNull JsonStream.NodeData child, boolean inArray) {
+            if (!inArray) {
+                return false;
+            }
+            int index = child.index();
+            return index >= start && index < end;
+        }
+    }
+
+    /**
+     * Parser of path that is already known to be valid, so it only looks for unsupported parts.
+     */
+    private static final class Parser {
+        private final @NotNull String path;
+        private int i = 1;
+
+        private Parser(@NotNull String path) {
+            this.path = path;
+        }
+
+        private @NotNull List<Step> parse() {
+            var steps = new ArrayList<Step>();
+            while (i < path.length()) {
+                boolean deep = false;
+                if (path.startsWith("..", i)) {
+                    deep = true;
+                    i += 2;
+                } else if (path.charAt(i) == '.') {
+                    i++;
+                }
+                Selector selector;
+                if (path.charAt(i) == '[') {
+                    i++;
+                    selector = bracket();
+                } else if (path.charAt(i) == '*') {
+                    i++;
+                    selector = new Wildcard();
+                } else {
+                    selector = new Names(Set.of(dotName()));
+                }
+                steps.add(new Step(deep, selector));
+            }
+            return steps;
+        }
+
+        private @NotNull String dotName() {
+            int start = i;
+            while (i < path.length() && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                i++;
+            }
+            String name = path.substring(start, i);
+            if (name.endsWith(")")) {
+                throw unsupported("functions");
+            }
+            return name;
+        }
+
+        private @NotNull Selector bracket() {
+            skipSpaces();
+            char c = path.charAt(i);
+            Selector selector;
+            if (c == '?') {
+                throw unsupported("filters");
+            } else if (c == '*') {
+                i++;
+                selector = new Wildcard();
+            } else if (c == '\'' || c == '"') {
+                var names = new HashSet<String>();
+                do {
+                    skipSpaces();
+                    names.add(quotedName());
+                    skipSpaces();
+                } while (path.charAt(i++) == ',');
+                i--;
+                selector = new Names(names);
+            } else {
+                selector = indexes();
+            }
+            skipSpaces();
+            i++; // ]
+            return selector;
+        }
+
+        private @NotNull String quotedName() {
+            char quote = path.charAt(i++);
+            var name = new StringBuilder();
+            char c;
+            while ((c = path.charAt(i++)) != quote) {
+                if (c == '\\') {
+                    c = path.charAt(i++);
+                }
+                name.append(c);
+            }
+            return name.toString();
+        }
+
+        private @NotNull Selector indexes() {
+            int start = i;
+            int end = path.indexOf(']', i);
+            i = end;
+            String text = path.substring(start, end).strip();
+            if (text.contains("-")) {
+                throw unsupported("negative indexes");
+            }
+            int colon = text.indexOf(':');
+            if (colon != -1) {
+                if (text.chars().filter(c -> c == ':').count() == 2) {
+                    throw unsupported("slice steps");
+                }
+                String from = text.substring(0, colon).strip();
+                String to = text.substring(colon + 1).strip();
+                return new Slice(from.isEmpty() ? 0 : index(from), to.isEmpty() ? Integer.MAX_VALUE : index(to));
+            }
+            return new Indexes(Arrays.stream(text.split(",")).map(String::strip).mapToInt(this::index).toArray());
+        }
+
+        private int index(@NotNull String text) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid index '" + text + "' in JSONPath: " + path, e);
+            }
+        }
+
+        private void skipSpaces() {
+            while (path.charAt(i) == ' ') {
+                i++;
+            }
+        }
+
+        private @NotNull IllegalArgumentException unsupported(@NotNull String what) {
+            return new IllegalArgumentException("JSONPath " + what + " can't be matched while streaming: " + path);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.lang.ref.Cleaner;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Reading of a blocking source ahead of the parser. A background thread fills a ring of buffers from the source,
+ * and the parser takes them in order, so waiting for input overlaps with parsing. Ring has one producer
+ * and one consumer, so it is handed over without locks: each side only moves its own counter,
+ * and parks when it has to wait for the other.<br>
+ * Wrappers made here don't close the source, only stop reading ahead of it. Closing a wrapper interrupts
+ * the background read and waits for it to return, so the source may be closed right after.
+ */
+final class ReadAhead {
+    private static final int SLOTS = 4;
+    private static final int SLOT_SIZE = 32 * 1024;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private ReadAhead() {
+    }
+
+    /**
+     * Wraps stream, so it is read ahead in the background.
+     */
+    static @NotNull InputStream inputStream(@NotNull InputStream source) {
+        var ring = new Ring<byte[]>(byte[]::new, source::read);
+        return new InputStream() {
+            private final @NotNull Cleaner.Cleanable cleanable = register(this, ring);
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte @NotNull [] bytes, int offset, int length) throws IOException {
+                return ring.read(bytes, offset, length);
+            }
+
+            @Override
+            public void close() {
+                cleanable.clean();
+                ring.awaitProducer();
+            }
+        };
+    }
+
+    /**
+     * Wraps reader, so it is read ahead in the background.
+     */
+    static @NotNull Reader reader(@NotNull Reader source) {
+        var ring = new Ring<char[]>(char[]::new, source::read);
+        return new Reader() {
+            private final @NotNull Cleaner.Cleanable cleanable = register(this, ring);
+
+            @Override
+            public int read(char @NotNull [] chars, int offset, int length) throws IOException {
+                return ring.read(chars, offset, length);
+            }
+
+            @Override
+            public void close() {
+                cleanable.clean();
+                ring.awaitProducer();
+            }
+        };
+    }
+
+    private static @NotNull Cleaner.Cleanable register(@NotNull Object wrapper, @NotNull Ring<?> ring) {
+        BackgroundThreads.EXECUTOR.execute(ring);
+        // If wrapper is abandoned without closing, producer may be left waiting for consumer forever
+        return CLEANER.register(wrapper, ring::stop);
+    }
+
+    /**
+     * Reads a chunk of the source into the array.
+     */
+    private interface Source<A> {
+        int read(@NotNull A array, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Buffers of type {@code A}, which is {@code byte[]} or {@code char[]}, filled by {@link #run()}.
+     */
+    private static final class Ring<A> implements Runnable {
+        private final @NotNull Object @NotNull [] slots = new Object[SLOTS];
+        /**
+         * Number of units in each slot, or {@code -1} at the end of the source.
+         */
+        private final int @NotNull [] lengths = new int[SLOTS];
+        private final @NotNull Source<A> source;
+        /**
+         * Number of slots the consumer finished with. Only written by the consumer.
+         */
+        private volatile long head = 0;
+        /**
+         * Number of slots the producer filled. Only written by the producer.
+         */
+        private volatile long tail = 0;
+        private volatile boolean stopped = false;
+        private volatile @Nullable Exception failure = null;
+        /**
+         * Thread in {@link #run()}, only set and cleared under the lock, so it is never interrupted after leaving.
+         */
+        private volatile @Nullable Thread producer = null;
+        private volatile @Nullable Thread consumer = null;
+        /**
+         * Position of the consumer in the slot at {@link #head}.
+         */
+        private int position = 0;
+
+        private Ring(@NotNull IntFunction<A> newSlot, @NotNull Source<A> source) {
+            for (int i = 0; i < SLOTS; i++) {
+                slots[i] = newSlot.apply(SLOT_SIZE);
+            }
+            this.source = source;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                producer = Thread.currentThread();
+            }
+            try {
+                produce();
+            } finally {
+                synchronized (this) {
+                    producer = null;
+                    notifyAll();
+                }
+                // Interrupt from stop() is meant for this ring, not for the next task of the thread
+                //noinspection ResultOfMethodCallIgnored
+                Thread.interrupted();
+            }
+        }
+
+        private void produce() {
+            while (!stopped) {
+                if (tail - head == SLOTS) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                int slot = (int) (tail % SLOTS);
+                int length;
+                try {
+                    @SuppressWarnings("unchecked")
+                    A array = (A) slots[slot];
+                    do {
+                        length = source.read(array, 0, SLOT_SIZE);
+                    } while (length == 0);
+                } catch (Exception e) {
+                    failure = e;
+                    length = -1;
+                }
+                lengths[slot] = length;
+                tail = tail + 1;
+                unpark(consumer);
+                if (length == -1) {
+                    return;
+                }
+            }
+        }
+
+        int read(@NotNull A array, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (head == tail) {
+                if (stopped) {
+                    throw new IOException("Stream is closed");
+                }
+                consumer = Thread.currentThread();
+                if (head == tail) {
+                    LockSupport.park(this);
+                }
+            }
+            int slot = (int) (head % SLOTS);
+            int filled = lengths[slot];
+            if (filled == -1) {
+                Exception failure = this.failure;
+                if (failure != null) {
+                    throw failure instanceof IOException io ? io : new IOException(failure);
+                }
+                return -1;
+            }
+            int count = Math.min(length, filled - position);
+            System.arraycopy(slots[slot], position, array, offset, count);
+            position += count;
+            if (position == filled) {
+                position = 0;
+                head = head + 1;
+                unpark(producer);
+            }
+            return count;
+        }
+
+        void stop() {
+            stopped = true;
+            synchronized (this) {
+                if (producer != null) {
+                    producer.interrupt();
+                }
+            }
+            unpark(consumer);
+        }
+
+        /**
+         * Waits until producer is out of the source, after {@link #stop()}.
+         */
+        synchronized void awaitProducer() {
+            boolean interrupted = false;
+            while (producer != null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void unpark(@Nullable Thread thread) {
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
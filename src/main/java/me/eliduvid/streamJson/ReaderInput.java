@@ -0,0 +1,159 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+
+/**
+ * {@link JsonInput} reading chars from a {@link Reader} into its own buffer.
+ */
+final class ReaderInput extends JsonInput {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final @NotNull Reader reader;
+    private final boolean closeReader;
+    private final char @NotNull [] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private final @NotNull KeyTable keys = new KeyTable();
+
+    /**
+     * @param closeReader whether {@link #close()} closes the reader, which is only the case for wrappers of our own
+     */
+    ReaderInput(@NotNull Reader reader, boolean closeReader) {
+        this.reader = reader;
+        this.closeReader = closeReader;
+    }
+
+    @Override
+    int read() {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position++];
+    }
+
+    @Override
+    int peek() {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position];
+    }
+
+    @Override
+    void skip() {
+        position++;
+    }
+
+    @Override
+    int readChar() {
+        return read();
+    }
+
+    @Override
+    @NotNull String readKey() {
+        if (peek() != EOF) {
+            int end = Math.min(limit, position + KeyTable.MAX_KEY_LENGTH + 1);
+            int hash = 0;
+            for (int i = position; i < end; i++) {
+                char c = buffer[i];
+                if (c == '"') {
+                    String key = keys.get(buffer, position, i, hash);
+                    position = i + 1;
+                    return key;
+                }
+                if (c == '\\' || c == '\n') {
+                    break;
+                }
+                hash = KeyTable.hash(hash, c);
+            }
+        }
+        return readString();
+    }
+
+    @Override
+    void readPlainStringChars(@NotNull StringBuilder builder) {
+        int i = position;
+        char c;
+        while (i < limit && (c = buffer[i]) != '"' && c != '\\' && c != '\n') {
+            i++;
+        }
+        builder.append(buffer, position, i - position);
+        position = i;
+    }
+
+    @Override
+    void skipPlainStringChars() {
+        int i = position;
+        char c;
+        while (i < limit && (c = buffer[i]) != '"' && c != '\\' && c != '\n') {
+            i++;
+        }
+        position = i;
+    }
+
+    @Override
+    void skipPlainContainerChars() {
+        int i = position;
+        char c;
+        while (i < limit && (c = buffer[i]) != '"' && (c | 0x20) != '{' && (c | 0x20) != '}') {
+            i++;
+        }
+        position = i;
+    }
+
+    @Override
+    void skipSpaces() {
+        int i = position;
+        while (i < limit && buffer[i] == ' ') {
+            i++;
+        }
+        position = i;
+    }
+
+    @Override
+    void skipDigits() {
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            int i = position + 1;
+            while (i < limit && (c = buffer[i]) >= '0' && c <= '9') {
+                i++;
+            }
+            position = i;
+        }
+    }
+
+    /**
+     * Refills {@link #buffer} from the reader. Should only be called when all buffered chars are consumed.
+     *
+     * @return {@code false} if the reader is exhausted
+     */
+    private boolean fill() {
+        int charsRead;
+        try {
+            do {
+                charsRead = reader.read(buffer, 0, buffer.length);
+            } while (charsRead == 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (charsRead == -1) {
+            return false;
+        }
+        position = 0;
+        limit = charsRead;
+        return true;
+    }
+
+    @Override
+    void close() {
+        if (closeReader) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over nodes of a {@link JsonStream} that match a JSONPath.
+ * Path is matched as nodes are pushed, and values of nodes which descendants can't match are skipped right away,
+ * so they never reach the consumer. Values of matching nodes are skipped after the consumer,
+ * if none of their descendants may match and the consumer didn't fetch them.
+ */
+final class SelectingSpliterator implements Spliterator<JsonStream.Node> {
+    private final @NotNull PathAutomaton path;
+    private final @NotNull JsonStream stream;
+    /**
+     * States of the automaton for every node of the current path, by depth.
+     */
+    private long[] states = new long[16];
+    private @Nullable JsonStream.Node matched = null;
+    private int matchedDepth;
+
+    SelectingSpliterator(@NotNull PathAutomaton path, @NotNull JsonStream stream) {
+        this.path = path;
+        this.stream = stream;
+    }
+
+    @Override
+    public boolean tryAdvance(@NotNull Consumer<? super JsonStream.Node> action) {
+        while (stream.tryAdvance(this::push)) {
+            if (matched != null) {
+                JsonStream.Node node = matched;
+                matched = null;
+                action.accept(node);
+                if (!path.mayMatchBelow(states[matchedDepth])) {
+                    stream.skipCurrentValue();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void push(@NotNull JsonStream.Node node) {
+        List<JsonStream.NodeData> nodeData = node.getNodeData();
+        int depth = nodeData.size() - 1;
+        long nodeStates = depth == 0
+                ? path.rootStates()
+                : path.childStates(states[depth - 1], nodeData.get(depth), nodeData.get(depth - 1).type());
+        if (depth == states.length) {
+            states = Arrays.copyOf(states, depth * 2);
+        }
+        states[depth] = nodeStates;
+        if (path.matches(nodeStates)) {
+            matched = node;
+            matchedDepth = depth;
+        } else if (!path.mayMatchBelow(nodeStates)) {
+            stream.skipCurrentValue();
+        }
+    }
+
+    @Override
+    public @Nullable Spliterator<JsonStream.Node> trySplit() {
+        Spliterator<JsonStream.Node> prefix = stream.trySplit();
+        return prefix == null ? null : new SelectingSpliterator(path, (JsonStream) prefix);
+    }
+
+    @Override
+    public long estimateSize() {
+        return stream.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return stream.characteristics();
+    }
+}
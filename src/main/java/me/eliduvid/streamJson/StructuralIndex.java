@@ -0,0 +1,247 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.*;
+
+/**
+ * Positions of all brackets of UTF-8 input that are not inside of strings, built by a background thread
+ * one block at a time, while input is being parsed. With it, skipping a container is a walk over its brackets
+ * instead of scanning every byte of it.<br>
+ * Index is consumed strictly forward: blocks before the position of the last lookup are dropped,
+ * and builder is never more than {@link #BLOCKS_AHEAD} blocks ahead of the consumer.
+ */
+final class StructuralIndex implements AutoCloseable {
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final int BLOCKS_AHEAD = 16;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final @NotNull BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(BLOCKS_AHEAD);
+    private final @NotNull Builder builder;
+    private final @NotNull Cleaner.Cleanable cleanable;
+    private @Nullable Block current = null;
+    private int cursor = 0;
+
+    StructuralIndex(@NotNull ChunkedBytes bytes) {
+        builder = new Builder(bytes, blocks);
+        BackgroundThreads.EXECUTOR.execute(builder);
+        // If stream is abandoned without closing, builder may be left waiting for consumer forever
+        cleanable = CLEANER.register(this, builder::stop);
+    }
+
+    /**
+     * Finds bracket that closes container which contents start at {@code offset}.
+     * Offsets of consecutive calls should not decrease.
+     *
+     * @return absolute offset of the closing bracket, or {@code -1} if input ended before it
+     */
+    long matchingClose(long offset) {
+        Block block = seek(offset);
+        int depth = 1;
+        while (true) {
+            int[] brackets = block.brackets;
+            int count = block.count;
+            for (int i = cursor; i < count; i++) {
+                int bracket = brackets[i];
+                if ((bracket & 1) == 0) {
+                    depth++;
+                } else if (--depth == 0) {
+                    cursor = i + 1;
+                    return block.start + (bracket >>> 1);
+                }
+            }
+            cursor = count;
+            if (block.last) {
+                return -1;
+            }
+            block = takeBlock();
+        }
+    }
+
+    /**
+     * Moves cursor to the first bracket at or after the offset, dropping all blocks before it.
+     */
+    private @NotNull Block seek(long offset) {
+        Block block = current == null ? takeBlock() : current;
+        while (!block.last && block.start + BLOCK_SIZE <= offset) {
+            block = takeBlock();
+        }
+        if (block.start < offset) {
+            int found = Arrays.binarySearch(block.brackets, cursor, block.count, (int) (offset - block.start) << 1);
+            cursor = found >= 0 ? found : -found - 1;
+        }
+        return block;
+    }
+
+    private @NotNull Block takeBlock() {
+        Block block;
+        try {
+            block = blocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (block.failure != null) {
+            throw new RuntimeException(block.failure);
+        }
+        current = block;
+        cursor = 0;
+        return block;
+    }
+
+    @Override
+    public void close() {
+        cleanable.clean();
+    }
+
+    /**
+     * Brackets of a block, encoded as offset from the block start shifted left by one,
+     * with the lowest bit set for closing brackets. Last block of the input is marked with {@code last}
+     * and may carry {@code failure} of the builder.
+     */
+    private record Block(long start, int @NotNull [] brackets, int count, boolean last, @Nullable Throwable failure) {
+    }
+
+    private static final class Builder implements Runnable {
+        private final @NotNull ChunkedBytes bytes;
+        private final @NotNull BlockingQueue<Block> blocks;
+        private boolean inString = false;
+        private boolean escaped = false;
+        /**
+         * Thread in {@link #run()}, only set and cleared under the lock, so it is never interrupted after leaving.
+         */
+        private @Nullable Thread thread = null;
+        private boolean stopped = false;
+
+        private Builder(@NotNull ChunkedBytes bytes, @NotNull BlockingQueue<Block> blocks) {
+            this.bytes = bytes;
+            this.blocks = blocks;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+            try {
+                build();
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                    stopped = true;
+                }
+                // Interrupt from stop() is meant for this builder, not for the next task of the thread
+                //noinspection ResultOfMethodCallIgnored
+                Thread.interrupted();
+            }
+        }
+
+        /**
+         * Stops building, interrupting the builder if it is running.
+         */
+        synchronized void stop() {
+            stopped = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        private void build() {
+            try {
+                Throwable failure = null;
+                try {
+                    for (int chunk = 0; chunk < bytes.chunkCount(); chunk++) {
+                        ByteBuffer buffer = bytes.chunk(chunk);
+                        for (int start = 0; start < buffer.limit(); start += BLOCK_SIZE) {
+                            blocks.put(buildBlock(buffer, (long) chunk * ChunkedBytes.CHUNK_SIZE, start,
+                                    Math.min(start + BLOCK_SIZE, buffer.limit())));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException | Error e) {
+                    failure = e;
+                }
+                blocks.put(new Block(bytes.size(), new int[0], 0, true, failure));
+            } catch (InterruptedException ignored) {
+                // Consumer is gone
+            }
+        }
+
+        private @NotNull Block buildBlock(@NotNull ByteBuffer buffer, long chunkStart, int start, int end) {
+            int[] brackets = new int[64];
+            int count = 0;
+            int i = start;
+            while (i < end) {
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                        i++;
+                        continue;
+                    }
+                    i = nextQuoteOrBackslash(buffer, i, end);
+                    if (i == end) {
+                        break;
+                    }
+                    if (buffer.get(i) == '"') {
+                        inString = false;
+                    } else {
+                        escaped = true;
+                    }
+                } else {
+                    i = nextQuoteOrBracket(buffer, i, end);
+                    if (i == end) {
+                        break;
+                    }
+                    int b = buffer.get(i);
+                    if (b == '"') {
+                        inString = true;
+                    } else {
+                        if (count == brackets.length) {
+                            brackets = Arrays.copyOf(brackets, count * 2);
+                        }
+                        brackets[count++] = (i - start) << 1 | ((b | 0x20) == '}' ? 1 : 0);
+                    }
+                }
+                i++;
+            }
+            return new Block(chunkStart + start, brackets, count, false, null);
+        }
+
+        private static int nextQuoteOrBackslash(@NotNull ByteBuffer buffer, int i, int end) {
+            while (end - i >= Long.BYTES) {
+                long found = Swar.quotesOrBackslashes(buffer.getLong(i));
+                if (found != 0) {
+                    return i + Swar.firstByte(found);
+                }
+                i += Long.BYTES;
+            }
+            int b;
+            while (i < end && (b = buffer.get(i)) != '"' && b != '\\') {
+                i++;
+            }
+            return i;
+        }
+
+        private static int nextQuoteOrBracket(@NotNull ByteBuffer buffer, int i, int end) {
+            while (end - i >= Long.BYTES) {
+                long found = Swar.quotesOrBrackets(buffer.getLong(i));
+                if (found != 0) {
+                    return i + Swar.firstByte(found);
+                }
+                i += Long.BYTES;
+            }
+            int b;
+            while (i < end && (b = buffer.get(i)) != '"' && (b | 0x20) != '{' && (b | 0x20) != '}') {
+                i++;
+            }
+            return i;
+        }
+    }
+}
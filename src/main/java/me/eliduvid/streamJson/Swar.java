@@ -0,0 +1,101 @@
+package me.eliduvid.streamJson;
+
+/**
+ * SIMD within a register helpers. Each {@code long} holds 8 bytes of input read in little endian order,
+ * so lowest byte of the word is the first one in the input.
+ * All the masks returned have high bit set in every byte that matched.
+ * Masks are only exact up to the first match, bytes after it may be false positives.
+ * Use {@link #firstByte(long)} to find index of the first match.
+ */
+final class Swar {
+    static final long ONES = 0x0101010101010101L;
+    static final long HIGH_BITS = 0x8080808080808080L;
+    static final long SPACES = 0x2020202020202020L;
+    private static final long QUOTES = 0x2222222222222222L;
+    private static final long BACKSLASHES = 0x5C5C5C5C5C5C5C5CL;
+    private static final long LINE_FEEDS = 0x0A0A0A0A0A0A0A0AL;
+    private static final long COMMAS = 0x2C2C2C2C2C2C2C2CL;
+    private static final long OPEN_BRACES = 0x7B7B7B7B7B7B7B7BL;
+    private static final long CLOSE_BRACES = 0x7D7D7D7D7D7D7D7DL;
+    private static final long HIGH_NIBBLES = 0xF0F0F0F0F0F0F0F0L;
+    private static final long DIGIT_HIGH_NIBBLES = 0x3030303030303030L;
+    private static final long SIXES = 0x0606060606060606L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private Swar() {
+    }
+
+    /**
+     * Bytes equal to zero.
+     */
+    static long zeroBytes(long word) {
+        return (word - ONES) & ~word & HIGH_BITS;
+    }
+
+    /**
+     * Bytes that are {@code "} or {@code \}.
+     */
+    static long quotesOrBackslashes(long word) {
+        return zeroBytes(word ^ QUOTES) | zeroBytes(word ^ BACKSLASHES);
+    }
+
+    /**
+     * Bytes that are {@code "}, {@code \} or line feed.
+     */
+    static long stringEnds(long word) {
+        return quotesOrBackslashes(word) | zeroBytes(word ^ LINE_FEEDS);
+    }
+
+    /**
+     * Bytes that are {@code "}, {@code \}, line feed, or not ASCII.
+     */
+    static long nonPlainStringBytes(long word) {
+        return stringEnds(word) | word & HIGH_BITS;
+    }
+
+    /**
+     * Bytes that are {@code "}, {@code [}, {@code ]}, <code>{</code> or <code>}</code>.
+     * Setting 0x20 bit maps square brackets to braces and no other byte to any of them.
+     */
+    static long quotesOrBrackets(long word) {
+        long folded = word | SPACES;
+        return zeroBytes(word ^ QUOTES) | zeroBytes(folded ^ OPEN_BRACES) | zeroBytes(folded ^ CLOSE_BRACES);
+    }
+
+    /**
+     * Bytes that are {@code "}, {@code ,} or brackets.
+     */
+    static long quotesBracketsOrCommas(long word) {
+        return quotesOrBrackets(word) | zeroBytes(word ^ COMMAS);
+    }
+
+    /**
+     * Bytes that are {@code "}, {@code \} or brackets.
+     */
+    static long quotesBackslashesOrBrackets(long word) {
+        return quotesOrBrackets(word) | zeroBytes(word ^ BACKSLASHES);
+    }
+
+    /**
+     * Bytes that are not ASCII digits.
+     */
+    static long nonDigits(long word) {
+        long wrongHighNibble = (word & HIGH_NIBBLES) ^ DIGIT_HIGH_NIBBLES;
+        long lowNibbleOverNine = ((word + SIXES) & HIGH_NIBBLES) ^ DIGIT_HIGH_NIBBLES;
+        return nonZeroBytes(wrongHighNibble | lowNibbleOverNine);
+    }
+
+    /**
+     * Bytes not equal to zero.
+     */
+    static long nonZeroBytes(long word) {
+        return (((word & LOW_BITS) + LOW_BITS) | word) & HIGH_BITS;
+    }
+
+    /**
+     * Index of the first matched byte in non-zero mask.
+     */
+    static int firstByte(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+}
@@ -0,0 +1,133 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * {@link Utf8Input} working directly on a range of {@link ChunkedBytes}, one chunk at a time.
+ * If {@link StructuralIndex} is provided, containers are skipped using it instead of scanning them.
+ */
+final class Utf8ChunkedInput extends Utf8Input {
+    /**
+     * Inputs smaller than this are not worth splitting.
+     */
+    private static final int MIN_SPLIT_SIZE = 1 << 16;
+
+    private final @NotNull ChunkedBytes bytes;
+    private final long end;
+    private @Nullable StructuralIndex index;
+    private int chunk = 0;
+
+    Utf8ChunkedInput(@NotNull ChunkedBytes bytes, long start, long end, @Nullable StructuralIndex index) {
+        super(ByteBuffer.allocate(0), 0, 0);
+        this.bytes = bytes;
+        this.end = end;
+        this.index = index;
+        seek(start);
+    }
+
+    @Override
+    boolean fill() {
+        long offset = offset();
+        if (offset >= end || chunk + 1 >= bytes.chunkCount()) {
+            return false;
+        }
+        seek(offset);
+        return true;
+    }
+
+    /**
+     * Absolute offset of the next byte to be read.
+     */
+    @Override
+    long offset() {
+        return (long) chunk * ChunkedBytes.CHUNK_SIZE + position;
+    }
+
+    @Override
+    void transferTo(long start, long end, @NotNull WritableByteChannel channel) throws IOException {
+        bytes.transferTo(start, end, channel);
+    }
+
+    @Override
+    @NotNull String text(long start, long end) {
+        return bytes.decode(start, end);
+    }
+
+    private void seek(long offset) {
+        if (bytes.chunkCount() == 0) {
+            return;
+        }
+        chunk = (int) Math.min(offset / ChunkedBytes.CHUNK_SIZE, bytes.chunkCount() - 1);
+        long chunkStart = (long) chunk * ChunkedBytes.CHUNK_SIZE;
+        buffer = bytes.chunk(chunk);
+        position = (int) (offset - chunkStart);
+        limit = (int) Math.min(buffer.limit(), end - chunkStart);
+    }
+
+    @Override
+    void skipContainer() {
+        if (index == null) {
+            super.skipContainer();
+            return;
+        }
+        long close = index.matchingClose(offset());
+        if (close == -1 || close >= end) {
+            throw illegalState("Unexpected EOF");
+        }
+        seek(close + 1);
+    }
+
+    @Override
+    long estimateSize() {
+        return end - offset();
+    }
+
+    /**
+     * Split parts don't use structural index, it is only built for the whole input.
+     */
+    @Override
+    @Nullable JsonInput splitAtLineBreak() {
+        long offset = offset();
+        if (end - offset < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        long lineBreak = bytes.indexOf((byte) '\n', offset + (end - offset) / 2, end);
+        if (lineBreak == -1 || lineBreak + 1 == end) {
+            return null;
+        }
+        close();
+        index = null;
+        var prefix = new Utf8ChunkedInput(bytes, offset, lineBreak + 1, null);
+        seek(lineBreak + 1);
+        return prefix;
+    }
+
+    @Override
+    long countLines(long start, long end) {
+        long count = 0;
+        while (start < end) {
+            long lineBreak = bytes.indexOf((byte) '\n', start, end);
+            long lineEnd = lineBreak == -1 ? end : lineBreak;
+            for (long i = start; i < lineEnd; i++) {
+                byte b = bytes.get(i);
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    count++;
+                    break;
+                }
+            }
+            start = lineEnd + 1;
+        }
+        return count;
+    }
+
+    @Override
+    void close() {
+        if (index != null) {
+            index.close();
+        }
+    }
+}
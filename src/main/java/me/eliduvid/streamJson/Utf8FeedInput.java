@@ -0,0 +1,61 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.nio.*;
+
+/**
+ * {@link Utf8Input} over UTF-8 encoded bytes that are appended to its own buffer as they arrive.
+ * Running out of the bytes appended so far is reported as {@link #EOF}, and reading may go on after more are appended.
+ */
+final class Utf8FeedInput extends Utf8Input {
+    private static final int BUFFER_SIZE = 8192;
+
+    private byte @NotNull [] array;
+
+    Utf8FeedInput() {
+        this(new byte[BUFFER_SIZE]);
+    }
+
+    private Utf8FeedInput(byte @NotNull [] array) {
+        super(wrap(array), 0, 0);
+        this.array = array;
+    }
+
+    private static @NotNull ByteBuffer wrap(byte @NotNull [] array) {
+        return ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    boolean fill() {
+        return false;
+    }
+
+    /**
+     * Appends all remaining bytes of the buffer after the window.
+     * Consumed bytes are dropped first if there is no room for the new ones.
+     *
+     * @return number of units the window was moved back by
+     */
+    int append(@NotNull ByteBuffer bytes) {
+        int shift = 0;
+        int length = bytes.remaining();
+        if (array.length - limit < length) {
+            shift = position;
+            int remaining = limit - position;
+            if (array.length < remaining + length) {
+                byte[] grown = new byte[Math.max(remaining + length, array.length * 2)];
+                System.arraycopy(array, position, grown, 0, remaining);
+                array = grown;
+                buffer = wrap(grown);
+            } else {
+                System.arraycopy(array, position, array, 0, remaining);
+            }
+            position = 0;
+            limit = remaining;
+        }
+        bytes.get(array, limit, length);
+        limit += length;
+        return shift;
+    }
+}
@@ -0,0 +1,270 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.nio.ByteBuffer;
+
+import static java.lang.Character.*;
+
+/**
+ * {@link JsonInput} working directly on UTF-8 encoded bytes held in a {@link ByteBuffer} window.
+ * Structure of the document is scanned without any decoding, bulk skips look at 8 bytes at once using {@link Swar}.
+ * Bytes are decoded to chars only inside of strings that are read.
+ * Window buffers should be in {@link java.nio.ByteOrder#LITTLE_ENDIAN} order.
+ */
+abstract class Utf8Input extends JsonInput {
+    private static final char REPLACEMENT = '\uFFFD';
+    private static final int[] MIN_CODE_POINT = {0, 0x80, 0x800, 0x10000};
+
+    @NotNull ByteBuffer buffer;
+    int position;
+    int limit;
+    private char pendingLowSurrogate = 0;
+    private final @NotNull KeyTable keys = new KeyTable();
+    /**
+     * Chars decoded by {@link #readPlainStringChars(StringBuilder)}, before they are appended at once.
+     */
+    private final char @NotNull [] decoded = new char[512];
+
+    Utf8Input(@NotNull ByteBuffer buffer, int position, int limit) {
+        this.buffer = buffer;
+        this.position = position;
+        this.limit = limit;
+    }
+
+    /**
+     * Moves the window forward. Should only be called when all bytes of the window are consumed.
+     *
+     * @return {@code false} if there is no more input
+     */
+    abstract boolean fill();
+
+    @Override
+    final int read() {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer.get(position++) & 0xFF;
+    }
+
+    @Override
+    final int peek() {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer.get(position) & 0xFF;
+    }
+
+    @Override
+    final void skip() {
+        position++;
+    }
+
+    @Override
+    final @NotNull String readKey() {
+        if (peek() != EOF) {
+            int end = Math.min(limit, position + KeyTable.MAX_KEY_LENGTH + 1);
+            int hash = 0;
+            for (int i = position; i < end; i++) {
+                int b = buffer.get(i) & 0xFF;
+                if (b == '"') {
+                    String key = keys.get(buffer, position, i, hash);
+                    position = i + 1;
+                    return key;
+                }
+                if (b == '\\' || b == '\n') {
+                    break;
+                }
+                hash = KeyTable.hash(hash, b);
+            }
+        }
+        return readString();
+    }
+
+    /**
+     * Decodes ASCII 8 bytes at once, and well-formed multibyte sequences that are whole in the window inline.
+     * Anything malformed is left for {@link #readChar()}, so it is replaced the same way.
+     */
+    @Override
+    final void readPlainStringChars(@NotNull StringBuilder builder) {
+        if (pendingLowSurrogate != 0) {
+            builder.append(pendingLowSurrogate);
+            pendingLowSurrogate = 0;
+        }
+        char[] decoded = this.decoded;
+        int count = 0;
+        int i = position;
+        while (i < limit) {
+            if (count > decoded.length - Long.BYTES) {
+                builder.append(decoded, 0, count);
+                count = 0;
+            }
+            if (limit - i >= Long.BYTES) {
+                long word = buffer.getLong(i);
+                if (Swar.nonPlainStringBytes(word) == 0) {
+                    for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+                        decoded[count++] = (char) (word >>> shift & 0xFF);
+                    }
+                    i += Long.BYTES;
+                    continue;
+                }
+            }
+            int b = buffer.get(i) & 0xFF;
+            if (b < 0x80) {
+                if (b == '"' || b == '\\' || b == '\n') {
+                    break;
+                }
+                decoded[count++] = (char) b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0 && limit - i >= 2) {
+                int b1 = buffer.get(i + 1);
+                int codePoint = (b & 0x1F) << 6 | b1 & 0x3F;
+                if ((b1 & 0xC0) != 0x80 || codePoint < MIN_CODE_POINT[1]) {
+                    break;
+                }
+                decoded[count++] = (char) codePoint;
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0 && limit - i >= 3) {
+                int b1 = buffer.get(i + 1);
+                int b2 = buffer.get(i + 2);
+                int codePoint = (b & 0x0F) << 12 | (b1 & 0x3F) << 6 | b2 & 0x3F;
+                if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80 || codePoint < MIN_CODE_POINT[2]
+                        || (codePoint >= MIN_SURROGATE && codePoint <= MAX_SURROGATE)) {
+                    break;
+                }
+                decoded[count++] = (char) codePoint;
+                i += 3;
+            } else if ((b & 0xF8) == 0xF0 && limit - i >= 4) {
+                int b1 = buffer.get(i + 1);
+                int b2 = buffer.get(i + 2);
+                int b3 = buffer.get(i + 3);
+                int codePoint = (b & 0x07) << 18 | (b1 & 0x3F) << 12 | (b2 & 0x3F) << 6 | b3 & 0x3F;
+                if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80
+                        || codePoint < MIN_CODE_POINT[3] || codePoint > MAX_CODE_POINT) {
+                    break;
+                }
+                decoded[count++] = highSurrogate(codePoint);
+                decoded[count++] = lowSurrogate(codePoint);
+                i += 4;
+            } else {
+                break;
+            }
+        }
+        builder.append(decoded, 0, count);
+        position = i;
+    }
+
+    @Override
+    final void skipPlainStringChars() {
+        int i = position;
+        while (limit - i >= Long.BYTES) {
+            long found = Swar.stringEnds(buffer.getLong(i));
+            if (found != 0) {
+                position = i + Swar.firstByte(found);
+                return;
+            }
+            i += Long.BYTES;
+        }
+        int b;
+        while (i < limit && (b = buffer.get(i)) != '"' && b != '\\' && b != '\n') {
+            i++;
+        }
+        position = i;
+    }
+
+    @Override
+    final void skipPlainContainerChars() {
+        int i = position;
+        while (limit - i >= Long.BYTES) {
+            long found = Swar.quotesOrBrackets(buffer.getLong(i));
+            if (found != 0) {
+                position = i + Swar.firstByte(found);
+                return;
+            }
+            i += Long.BYTES;
+        }
+        int b;
+        while (i < limit && (b = buffer.get(i)) != '"' && (b | 0x20) != '{' && (b | 0x20) != '}') {
+            i++;
+        }
+        position = i;
+    }
+
+    @Override
+    final void skipSpaces() {
+        int i = position;
+        while (limit - i >= Long.BYTES && buffer.getLong(i) == Swar.SPACES) {
+            i += Long.BYTES;
+        }
+        position = i;
+    }
+
+    @Override
+    final void skipDigits() {
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            int i = position + 1;
+            while (limit - i >= Long.BYTES) {
+                long found = Swar.nonDigits(buffer.getLong(i));
+                if (found != 0) {
+                    position = i + Swar.firstByte(found);
+                    return;
+                }
+                i += Long.BYTES;
+            }
+            while (i < limit && (c = buffer.get(i)) >= '0' && c <= '9') {
+                i++;
+            }
+            position = i;
+        }
+    }
+
+    /**
+     * Decodes next UTF-8 sequence. Malformed sequences are replaced with {@code U+FFFD},
+     * same as {@link java.io.InputStreamReader} does.
+     * Supplementary code points are returned as two surrogate chars.
+     */
+    @Override
+    final int readChar() {
+        if (pendingLowSurrogate != 0) {
+            char c = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+            return c;
+        }
+        int b = read();
+        if (b < 0x80) {
+            return b;
+        }
+        int codePoint;
+        int continuationBytes;
+        if ((b & 0xE0) == 0xC0) {
+            codePoint = b & 0x1F;
+            continuationBytes = 1;
+        } else if ((b & 0xF0) == 0xE0) {
+            codePoint = b & 0x0F;
+            continuationBytes = 2;
+        } else if ((b & 0xF8) == 0xF0) {
+            codePoint = b & 0x07;
+            continuationBytes = 3;
+        } else {
+            return REPLACEMENT;
+        }
+        for (int i = 0; i < continuationBytes; i++) {
+            int next = peek();
+            if ((next & 0xC0) != 0x80) {
+                return REPLACEMENT;
+            }
+            skip();
+            codePoint = codePoint << 6 | next & 0x3F;
+        }
+        if (codePoint < MIN_CODE_POINT[continuationBytes] || codePoint > MAX_CODE_POINT
+                || (codePoint >= MIN_SURROGATE && codePoint <= MAX_SURROGATE)) {
+            return REPLACEMENT;
+        }
+        if (codePoint >= MIN_SUPPLEMENTARY_CODE_POINT) {
+            pendingLowSurrogate = lowSurrogate(codePoint);
+            return highSurrogate(codePoint);
+        }
+        return codePoint;
+    }
+}
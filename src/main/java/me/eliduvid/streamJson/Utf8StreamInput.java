@@ -0,0 +1,60 @@
+package me.eliduvid.streamJson;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * {@link Utf8Input} reading UTF-8 encoded bytes from an {@link InputStream} into its own buffer.
+ */
+final class Utf8StreamInput extends Utf8Input {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final @NotNull InputStream input;
+    private final boolean closeInput;
+    private final byte @NotNull [] array;
+
+    /**
+     * @param closeInput whether {@link #close()} closes the stream, which is only the case for wrappers of our own
+     */
+    Utf8StreamInput(@NotNull InputStream input, boolean closeInput) {
+        this(input, closeInput, new byte[BUFFER_SIZE]);
+    }
+
+    private Utf8StreamInput(@NotNull InputStream input, boolean closeInput, byte @NotNull [] array) {
+        super(ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN), 0, 0);
+        this.input = input;
+        this.closeInput = closeInput;
+        this.array = array;
+    }
+
+    @Override
+    boolean fill() {
+        int bytesRead;
+        try {
+            do {
+                bytesRead = input.read(array, 0, array.length);
+            } while (bytesRead == 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (bytesRead == -1) {
+            return false;
+        }
+        position = 0;
+        limit = bytesRead;
+        return true;
+    }
+
+    @Override
+    void close() {
+        if (closeInput) {
+            try {
+                input.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
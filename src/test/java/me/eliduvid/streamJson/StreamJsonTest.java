@@ -1,13 +1,45 @@
 package me.eliduvid.streamJson;
 
 import org.intellij.lang.annotations.Language;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 public class StreamJsonTest {
     @Language("JSON")
@@ -780,4 +812,996 @@ public class StreamJsonTest {
                 .toList();
         assertEquals(expected, actual);
     }
+
+    @Test
+    public void readFromReaderWithoutMark() {
+        var reader = new InputStreamReader(new ByteArrayInputStream(TEST_JSON.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8);
+        long count = JsonStream.jsonStream(reader)
+                .filter(node -> node.leaf().name().equals("friends"))
+                .count();
+        assertEquals(7, count);
+    }
+
+    @Test
+    public void readUtf8Bytes() {
+        String json = TEST_JSON.replace("name", "näme").replace("Marsha Cote", "Marsha Côté 日本 \uD83D\uDE00");
+        List<String> expected = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.leaf().type() == JsonStream.NodeType.STRING)
+                .map(node -> node.leaf().name() + "=" + node.getValue())
+                .toList();
+        List<String> actual = JsonStream.jsonStream(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                        StandardCharsets.UTF_8)
+                .filter(node -> node.leaf().type() == JsonStream.NodeType.STRING)
+                .map(node -> node.leaf().name() + "=" + node.getValue())
+                .toList();
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void readMappedFile() throws IOException {
+        Path file = Files.createTempFile("stream-json", ".json");
+        try {
+            Files.writeString(file, TEST_JSON);
+            List<String> expected = JsonStream.jsonStream(new StringReader(TEST_JSON))
+                    .filter(node -> node.leaf().type() == JsonStream.NodeType.OBJECT)
+                    .map(JsonStream.Node::getValue)
+                    .toList();
+            List<String> actual = JsonStream.jsonStream(file)
+                    .filter(node -> node.leaf().type() == JsonStream.NodeType.OBJECT)
+                    .map(JsonStream.Node::getValue)
+                    .toList();
+            assertEquals(expected, actual);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void skipStringsAndNumbers() {
+        var json = new StringBuilder("[");
+        var expected = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            String number = "1234567890123456789".substring(0, i % 19 + 1) + (i % 3 == 0 ? ".25e+10" : "");
+            json.append("\"").append("x".repeat(i)).append("\\\"").append("y".repeat(i)).append("\\\\\",")
+                    .append(" ".repeat(i)).append(number).append(",\n");
+            expected.add(Integer.toString(2 * i + 1));
+        }
+        json.append("\"end\"]");
+        List<String> fromBytes = JsonStream.jsonStream(
+                        new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)
+                .filter(node -> node.leaf().type() == JsonStream.NodeType.NUMBER)
+                .map(node -> node.leaf().name())
+                .toList();
+        List<String> fromChars = JsonStream.jsonStream(new StringReader(json.toString()))
+                .filter(node -> node.leaf().type() == JsonStream.NodeType.NUMBER)
+                .map(node -> node.leaf().name())
+                .toList();
+        assertEquals(expected, fromBytes);
+        assertEquals(expected, fromChars);
+    }
+
+    @Test
+    public void skipNodes() {
+        String json = "{\"junk\": {\"a\": [1, {\"b\": \"}]\"}]}, \"text\": \"\\\"x\", \"n\": 12.5e-3, \"t\": true,"
+                + " \"list\": [[2], 3], \"end\": null}";
+        for (Stream<JsonStream.Node> stream : List.of(JsonStream.jsonStream(new StringReader(json)),
+                JsonStream.jsonStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            var actual = new ArrayList<String>();
+            stream.forEach(node -> {
+                String name = node.leaf().name();
+                if (!name.equals("") && !name.equals("list")) {
+                    node.skip();
+                    node.skip();
+                    if (node.leaf().type() != JsonStream.NodeType.BOOLEAN && node.leaf().type() != JsonStream.NodeType.NULL) {
+                        assertThrows(IllegalStateException.class, node::getValue);
+                    }
+                }
+                actual.add(name);
+            });
+            assertEquals(List.of("", "junk", "text", "n", "t", "list", "0", "1", "end"), actual);
+        }
+
+        // Raw line break ends a string whether it is read or skipped
+        String broken = "[\"a\nb\", 1]";
+        for (Stream<JsonStream.Node> stream : List.of(JsonStream.jsonStream(new StringReader(broken)),
+                JsonStream.jsonStream(broken.getBytes(StandardCharsets.UTF_8)))) {
+            assertThrows(IllegalStateException.class, () -> stream.forEach(JsonStream.Node::skip));
+        }
+        assertThrows(IllegalStateException.class, () -> JsonStream.jsonStream(new StringReader(broken)).count());
+        var tokenizer = JsonStream.builder().tokenizer(("[\"" + "x".repeat(20) + "\n\"]").getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalStateException.class, () -> {
+            //noinspection StatementWithEmptyBody
+            while (tokenizer.nextToken() != null) {
+            }
+        });
+    }
+
+    @Test
+    public void reuseKeyStrings() {
+        String json = "[{\"id\": 1, \"название\": 2}, {\"id\": 3, \"название\": 4, \"" + "k".repeat(100) + "\": 5}]";
+        for (Stream<JsonStream.Node> stream : List.of(JsonStream.jsonStream(new StringReader(json)),
+                JsonStream.jsonStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            List<String> names = stream.filter(node -> node.getNodeData().size() == 3)
+                    .map(node -> node.leaf().name())
+                    .toList();
+            assertEquals(List.of("id", "название", "id", "название", "k".repeat(100)), names);
+            assertSame(names.get(0), names.get(2));
+            assertSame(names.get(1), names.get(3));
+        }
+        assertTrue(JsonStream.jsonStream(new StringReader(json))
+                .anyMatch(node -> node.leaf().nameEquals(new StringBuilder("назв").append("ание"))));
+    }
+
+    @Test
+    public void indexArrayValues() {
+        var indexes = new ArrayList<Integer>();
+        var names = new ArrayList<String>();
+        JsonStream.jsonStream(new StringReader("{\"a\": [0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, [11]]}")).forEach(node -> {
+            JsonStream.NodeData leaf = node.leaf();
+            indexes.add(leaf.index());
+            if (leaf.nameEquals("10") || leaf.nameEquals("0") || leaf.nameEquals("a")) {
+                names.add(leaf.name());
+            }
+            assertEquals(leaf.name().equals("1"), leaf.nameEquals("1"));
+        });
+        assertEquals(List.of(-1, -1, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 0), indexes);
+        assertEquals(List.of("a", "0", "10", "0"), names);
+    }
+
+    @Test
+    public void reusePathFrames() {
+        var leaves = new ArrayList<JsonStream.NodeData>();
+        var full = new ArrayList<JsonStream.Node>();
+        JsonStream.jsonStream(new StringReader("[{\"a\": 1}, {\"b\": [2]}]")).forEach(node -> {
+            leaves.add(node.leaf());
+            if (node.leaf().type() == JsonStream.NodeType.NUMBER) {
+                full.add(node.fetchFull());
+            }
+        });
+        assertSame(leaves.get(1), leaves.get(3));
+        assertSame(leaves.get(2), leaves.get(4));
+        assertEquals(List.of("", "0", "a"), full.get(0).getNodeData().stream().map(JsonStream.NodeData::name).toList());
+        assertEquals(List.of("", "1", "b", "0"), full.get(1).getNodeData().stream().map(JsonStream.NodeData::name).toList());
+        assertEquals(JsonStream.NodeType.OBJECT, full.get(0).getNodeData().get(1).type());
+        assertEquals("2", full.get(1).getValue());
+    }
+
+    @Test
+    public void readTypedValues() {
+        String json = "{\"long\": -9007199254740993, \"double\": 0.5e-3, \"exp\": 12E+2, \"zero\": 0.25,"
+                + " \"bool\": false, \"text\": \"a\\\"\\\\\\n\\u00e9\\ud83d\\ude00\\/\", \"fetched\": \"\\t\"}";
+        for (Stream<JsonStream.Node> stream : List.of(JsonStream.jsonStream(new StringReader(json)),
+                JsonStream.jsonStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            var values = new ArrayList<Object>();
+            stream.forEach(node -> {
+                switch (node.leaf().name()) {
+                    case "long" -> values.add(node.getLong());
+                    case "double" -> values.add(node.getDouble());
+                    case "exp" -> {
+                        values.add(node.getDouble());
+                        values.add(node.getValue());
+                        assertThrows(NumberFormatException.class, node::getLong);
+                    }
+                    case "zero" -> values.add(node.getDouble());
+                    case "bool" -> values.add(node.getBoolean());
+                    case "text" -> {
+                        values.add(node.getString());
+                        values.add(node.getValue());
+                        assertThrows(IllegalStateException.class, node::getLong);
+                    }
+                    case "fetched" -> {
+                        node.getValue();
+                        values.add(node.getString());
+                    }
+                }
+            });
+            assertEquals(List.of(-9007199254740993L, 0.5e-3, 1200.0, "12E+2", 0.25, false,
+                    "a\"\\\n\u00e9\ud83d\ude00/", "\"a\\\"\\\\\\n\u00e9\ud83d\ude00/\"", "\t"), values);
+        }
+    }
+
+    @Test
+    public void decodeLongStrings() {
+        String[][] pieces = {{"plain text", "plain text"}, {"é", "é"}, {"€", "€"}, {"😀", "😀"}, {"\\n", "\n"},
+                {"\\u00e9", "é"}, {"\\ud83d\\ude00", "😀"}, {"\\\"", "\""}, {"\\\\", "\\"}, {"\\/", "/"}};
+        var random = new Random(7);
+        var raw = new StringBuilder("\"");
+        var expected = new StringBuilder();
+        while (raw.length() < 40_000) {
+            String[] piece = pieces[random.nextInt(pieces.length)];
+            raw.append(piece[0]);
+            expected.append(piece[1]);
+        }
+        raw.append('"');
+        String json = "[" + raw + ", " + raw + "]";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (Stream<JsonStream.Node> stream : List.of(JsonStream.jsonStream(new StringReader(json)),
+                JsonStream.jsonStream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8),
+                JsonStream.jsonStream(bytes))) {
+            var values = new ArrayList<String>();
+            stream.filter(node -> node.getNodeData().size() == 2).forEach(node -> {
+                if (node.leaf().index() == 0) {
+                    values.add(node.getString());
+                } else {
+                    values.add(node.getValue());
+                }
+            });
+            assertEquals(List.of(expected.toString(), raw.toString()), values);
+        }
+    }
+
+    @Test
+    public void writeValues() {
+        String json = "{\"small\": [1, true], \"big\": [" + String.join(",", Collections.nCopies(300, TEST_JSON))
+                + "], \"text\": \"" + "é\\n".repeat(100_000) + "\"}";
+        List<String> expected = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 2)
+                .map(JsonStream.Node::getValue)
+                .toList();
+        var maxChunk = new int[1];
+        var written = new StringBuilder();
+        Appendable out = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                maxChunk[0] = Math.max(maxChunk[0], csq.length());
+                written.append(csq);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+        };
+        var actual = new ArrayList<String>();
+        JsonStream.jsonStream(json.getBytes(StandardCharsets.UTF_8))
+                .filter(node -> node.getNodeData().size() == 2)
+                .forEach(node -> {
+                    written.setLength(0);
+                    node.writeValueTo(out);
+                    actual.add(written.toString());
+                    assertThrows(IllegalStateException.class, node::getValue);
+                });
+        assertEquals(expected, actual);
+        assertTrue(maxChunk[0] < 64 * 1024);
+
+        var bytes = new ByteArrayOutputStream();
+        JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.leaf().nameEquals("text"))
+                .forEach(node -> node.writeValueTo(bytes));
+        assertEquals(expected.get(2), bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void transferValueRanges() {
+        String json = "{\"a\": {\"b\": [1, \"é\"]}, \"n\": 12.5, \"s\": \"x\\\"y\", \"t\": true, \"f\": [2]}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (boolean structuralIndex : new boolean[]{false, true}) {
+            var values = new ArrayList<String>();
+            var out = new ByteArrayOutputStream();
+            try (Stream<JsonStream.Node> stream = JsonStream.builder().structuralIndex(structuralIndex).stream(bytes)) {
+                stream.filter(node -> node.getNodeData().size() == 2).forEach(node -> {
+                    if (node.leaf().nameEquals("f")) {
+                        node.getValue();
+                    }
+                    JsonStream.ValueRange range = node.valueRange();
+                    values.add(new String(bytes, (int) range.start(), (int) range.length(), StandardCharsets.UTF_8));
+                    assertEquals(values.get(values.size() - 1), node.getValue());
+                    node.transferTo(Channels.newChannel(out));
+                });
+            }
+            assertEquals(List.of("{\"b\": [1, \"é\"]}", "12.5", "\"x\\\"y\"", "true", "[2]"), values);
+            assertEquals(String.join("", values), out.toString(StandardCharsets.UTF_8));
+        }
+
+        byte[] escaped = "{\"s\": \"\\u00e9x\", \"n\": 1.5e3, \"t\": \"\\\"\"}".getBytes(StandardCharsets.UTF_8);
+        var scalars = new ArrayList<String>();
+        var transferred = new ByteArrayOutputStream();
+        JsonStream.jsonStream(escaped).filter(node -> node.getNodeData().size() == 2).forEach(node -> {
+            if (node.leaf().type() == JsonStream.NodeType.STRING) {
+                node.getString();
+                node.getValue();
+            } else {
+                node.getDouble();
+            }
+            JsonStream.ValueRange range = node.valueRange();
+            scalars.add(new String(escaped, (int) range.start(), (int) range.length(), StandardCharsets.UTF_8));
+            node.transferTo(Channels.newChannel(transferred));
+        });
+        assertEquals(List.of("\"\\u00e9x\"", "1.5e3", "\"\\\"\""), scalars);
+        assertEquals(String.join("", scalars), transferred.toString(StandardCharsets.UTF_8));
+
+        var out = new ByteArrayOutputStream();
+        JsonStream.jsonStream(new StringReader(json)).filter(node -> node.leaf().nameEquals("a")).forEach(node -> {
+            assertThrows(UnsupportedOperationException.class, node::valueRange);
+            node.transferTo(Channels.newChannel(out));
+        });
+        assertEquals("{\"b\": [1, \"é\"]}", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void parseDoubles() {
+        var random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            String text = switch (i % 4) {
+                case 0 -> Double.toString(Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE));
+                case 1 -> Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+                case 2 -> random.nextInt(1_000_000) + "." + random.nextInt(1_000_000) + "e" + (random.nextInt(640) - 320);
+                default -> Long.toString((random.nextLong() & Long.MAX_VALUE) >>> random.nextInt(63)) + "e" + (random.nextInt(60) - 30);
+            };
+            if (text.contains("NaN") || text.contains("Infinity")) {
+                continue;
+            }
+            assertEquals(text, Double.parseDouble(text), JsonNumbers.parseDouble(text), 0);
+            assertEquals(text, -Double.parseDouble(text), JsonNumbers.parseDouble("-" + text), 0);
+        }
+        for (String text : List.of("9999999999999999999", "9300000000000000000", "9223372036854775808",
+                "9223372036854775807", "0.9999999999999999999", "1844674407370955161.5", "9999999999999999999e-30")) {
+            assertEquals(text, Double.parseDouble(text), JsonNumbers.parseDouble(text), 0);
+            assertEquals(text, -Double.parseDouble(text), JsonNumbers.parseDouble("-" + text), 0);
+        }
+        assertEquals(Long.MIN_VALUE, JsonNumbers.parseLong("-9223372036854775808"));
+        assertThrows(NumberFormatException.class, () -> JsonNumbers.parseLong("9223372036854775808"));
+    }
+
+    @Test
+    public void readValuesLazily() {
+        String json = "{\"small\": [1, true], \"big\": [" + String.join(",", Collections.nCopies(300, TEST_JSON))
+                + "], \"text\": \"" + "é\\n\\\"".repeat(100_000) + "\", \"number\": -1.5e3, \"last\": null}";
+        List<String> expected = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 2)
+                .map(JsonStream.Node::getValue)
+                .toList();
+        for (var stream : List.of(JsonStream.jsonStream(json.getBytes(StandardCharsets.UTF_8)),
+                JsonStream.jsonStream(new StringReader(json)))) {
+            List<String> actual = stream
+                    .filter(node -> node.getNodeData().size() == 2)
+                    .map(node -> {
+                        try (var reader = node.openValueReader()) {
+                            return readAll(reader);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    })
+                    .toList();
+            assertEquals(expected, actual);
+        }
+
+        var names = new ArrayList<String>();
+        JsonStream.jsonStream(json.getBytes(StandardCharsets.UTF_8)).forEach(node -> {
+            var leaf = node.leaf();
+            names.add(leaf.name());
+            try {
+                if (leaf.nameEquals("text")) {
+                    assertEquals("é\n\"".repeat(100_000), readAll(node.openStringContentReader()));
+                } else if (leaf.nameEquals("big")) {
+                    var reader = node.openValueReader();
+                    assertEquals('[', reader.read());
+                    assertThrows(IllegalStateException.class, node::getValue);
+                } else if (leaf.nameEquals("small")) {
+                    var reader = node.openValueReader();
+                    reader.read(new char[3]);
+                    reader.close();
+                    assertThrows(IOException.class, reader::read);
+                } else if (leaf.nameEquals("number")) {
+                    assertThrows(IllegalStateException.class, node::openStringContentReader);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertEquals(List.of("", "small", "big", "text", "number", "last"), names);
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        var builder = new StringBuilder();
+        var buffer = new char[1000];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void streamSubtrees() {
+        String json = """
+                {"customers": [
+                    {"name": "a", "orders": [{"id": 1, "items": [7]}, {"id": 2}], "empty": {}},
+                    {"name": "b", "orders": []},
+                    {"name": "c", "orders": [{"id": 3}]}
+                ], "after": true}""";
+        var orders = new ArrayList<String>();
+        var names = new ArrayList<String>();
+        JsonStream.jsonStream(json.getBytes(StandardCharsets.UTF_8))
+                .filter(node -> node.getNodeData().size() == 3)
+                .forEach(customer -> {
+                    var ids = customer.children()
+                            .filter(node -> node.leaf().nameEquals("orders"))
+                            .flatMap(JsonStream.Node::children)
+                            .map(order -> {
+                                assertEquals(2, order.getNodeData().size());
+                                assertEquals("orders", order.getNodeData().get(0).name());
+                                return order.fetchFull();
+                            })
+                            .map(JsonStream.Node::getValue)
+                            .toList();
+                    orders.add(String.join(";", ids));
+                    assertThrows(IllegalStateException.class, customer::children);
+                });
+        assertEquals(List.of("{\"id\": 1, \"items\": [7]};{\"id\": 2}", "", "{\"id\": 3}"), orders);
+
+        JsonStream.jsonStream(new StringReader(json)).forEach(node -> {
+            names.add(node.leaf().name());
+            if (node.leaf().nameEquals("customers")) {
+                var paths = node.descendants()
+                        .limit(7)
+                        .map(descendant -> descendant.getNodeData().stream()
+                                .map(JsonStream.NodeData::name)
+                                .collect(Collectors.joining("/")))
+                        .toList();
+                assertEquals(List.of("customers/0", "customers/0/name", "customers/0/orders",
+                        "customers/0/orders/0", "customers/0/orders/0/id", "customers/0/orders/0/items",
+                        "customers/0/orders/0/items/0"), paths);
+            }
+        });
+        assertEquals(List.of("", "customers", "after"), names);
+    }
+
+    @Test
+    public void tokenize() {
+        String json = "{\"a\": [1, \"x\\ty\", {}, [true, null]], \"b\": {\"c\": -2.5e1, \"d\": false}, \"e\": []}";
+        var expected = List.of("0 START_OBJECT null -1", "1 START_ARRAY a -1", "2 NUMBER null 0 1",
+                "2 STRING null 1 x\ty", "2 START_OBJECT null 2", "2 END_OBJECT null 2", "2 START_ARRAY null 3",
+                "3 BOOLEAN null 0 true", "3 NULL null 1 null", "2 END_ARRAY null 3", "1 END_ARRAY a -1",
+                "1 START_OBJECT b -1", "2 NUMBER c -1 -2.5e1", "2 BOOLEAN d -1 false", "1 END_OBJECT b -1",
+                "1 START_ARRAY e -1", "1 END_ARRAY e -1", "0 END_OBJECT null -1");
+        for (var tokenizer : List.of(JsonStream.builder().tokenizer(json.getBytes(StandardCharsets.UTF_8)),
+                JsonStream.builder().tokenizer(new StringReader(json)))) {
+            var actual = new ArrayList<String>();
+            JsonTokenizer.Token token;
+            while ((token = tokenizer.nextToken()) != null) {
+                String description = tokenizer.currentDepth() + " " + token + " " + tokenizer.currentKey() + " "
+                        + tokenizer.currentIndex();
+                if (token != JsonTokenizer.Token.START_OBJECT && token != JsonTokenizer.Token.START_ARRAY
+                        && token != JsonTokenizer.Token.END_OBJECT && token != JsonTokenizer.Token.END_ARRAY) {
+                    description += " " + tokenizer.getText();
+                }
+                actual.add(description);
+            }
+            tokenizer.close();
+            assertEquals(expected, actual);
+        }
+
+        try (var tokenizer = JsonStream.builder().concatenated(true).tokenizer(
+                "{\"a\": [1, 2], \"b\": 3.5} [4]".getBytes(StandardCharsets.UTF_8))) {
+            assertEquals(JsonTokenizer.Token.START_OBJECT, tokenizer.nextToken());
+            assertEquals(JsonTokenizer.Token.START_ARRAY, tokenizer.nextToken());
+            tokenizer.skipChildren();
+            assertEquals(JsonTokenizer.Token.END_ARRAY, tokenizer.currentType());
+            assertEquals(JsonTokenizer.Token.NUMBER, tokenizer.nextToken());
+            assertEquals(3.5, tokenizer.getDouble(), 0);
+            assertEquals(JsonTokenizer.Token.END_OBJECT, tokenizer.nextToken());
+            assertEquals(JsonTokenizer.Token.START_ARRAY, tokenizer.nextToken());
+            assertEquals(JsonTokenizer.Token.NUMBER, tokenizer.nextToken());
+            assertEquals(4, tokenizer.getLong());
+            assertEquals(JsonTokenizer.Token.END_ARRAY, tokenizer.nextToken());
+            assertNull(tokenizer.nextToken());
+        }
+
+        for (String invalid : List.of("[1,]", "{\"a\": 1,}", "{\"a\" 1}", "[1 2]", "[}", "{} {}", "1 2", "[1]]",
+                "nulls", "[1", "[tru]", "[01]", "{1: 2}")) {
+            var tokenizer = JsonStream.builder().tokenizer(new StringReader(invalid));
+            assertThrows(invalid, IllegalStateException.class, () -> {
+                //noinspection StatementWithEmptyBody
+                while (tokenizer.nextToken() != null) {
+                }
+            });
+            // Node stream has its own parser, it should reject the same input even if no value is read
+            assertThrows(invalid, IllegalStateException.class,
+                    () -> JsonStream.jsonStream(new StringReader(invalid)).count());
+            assertThrows(invalid, IllegalStateException.class,
+                    () -> JsonStream.jsonStream(invalid.getBytes(StandardCharsets.UTF_8)).count());
+        }
+    }
+
+    @Test
+    public void visitValues() {
+        String json = """
+                {"customers": [
+                    {"name": "a", "orders": [{"sum": 1.5}, {"sum": 2}], "junk": {"sum": 100}},
+                    {"name": "b", "orders": [], "vip": true, "note": null}
+                ]}""";
+        var events = new ArrayList<String>();
+        var totals = new ArrayList<String>();
+        JsonStream.parse(new StringReader(json), new JsonVisitor() {
+            private int depth = 0;
+            private String name;
+            private double total;
+
+            @Override
+            public @NotNull Action startObject(String key) {
+                events.add("{" + key);
+                if ("junk".equals(key)) {
+                    return Action.SKIP;
+                }
+                depth++;
+                return Action.CONTINUE;
+            }
+
+            @Override
+            public void endObject() {
+                events.add("}");
+                if (--depth == 2) {
+                    totals.add(name + "=" + total);
+                    total = 0;
+                }
+            }
+
+            @Override
+            public @NotNull Action startArray(String key) {
+                events.add("[" + key);
+                depth++;
+                return Action.CONTINUE;
+            }
+
+            @Override
+            public void endArray() {
+                events.add("]");
+                depth--;
+            }
+
+            @Override
+            public void number(String key, @NotNull CharSequence text) {
+                events.add(key + "=" + text);
+                total += Double.parseDouble(text.toString());
+            }
+
+            @Override
+            public void string(String key, @NotNull CharSequence value) {
+                events.add(key + "=" + value);
+                if ("name".equals(key)) {
+                    name = value.toString();
+                }
+            }
+
+            @Override
+            public void bool(String key, boolean value) {
+                events.add(key + "=" + value);
+            }
+
+            @Override
+            public void nullValue(String key) {
+                events.add(key + "=null");
+            }
+        });
+        assertEquals(List.of("{null", "[customers", "{null", "name=a", "[orders", "{null", "sum=1.5", "}",
+                "{null", "sum=2", "}", "]", "{junk", "}", "{null", "name=b", "[orders", "]", "vip=true", "note=null",
+                "}", "]", "}"), events);
+        assertEquals(List.of("a=3.5", "b=0.0"), totals);
+    }
+
+    @Test
+    public void feedChunks() {
+        String json = "{\"a\": [1, -20.5e+3, \"x\\\"y\", {}, [true, null, false]], \"long\": \""
+                + "é\\n".repeat(5000) + "\", \"b\": {\"c\": 0}, \"e\": []} ";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        var expected = new ArrayList<String>();
+        try (var tokenizer = JsonStream.builder().tokenizer(bytes)) {
+            JsonTokenizer.Token token;
+            while ((token = tokenizer.nextToken()) != null) {
+                expected.add(token + " " + tokenizer.currentDepth() + " " + tokenizer.currentKey() + " "
+                        + (token == JsonTokenizer.Token.NUMBER || token == JsonTokenizer.Token.STRING
+                        ? tokenizer.getText() : ""));
+            }
+        }
+        for (int chunk : new int[]{1, 3, 7, 1000}) {
+            var feeder = JsonStream.builder().feeder();
+            var actual = new ArrayList<String>();
+            int needMore = 0;
+            for (int i = 0; i <= bytes.length; i += chunk) {
+                if (i < bytes.length) {
+                    feeder.feed(ByteBuffer.wrap(bytes, i, Math.min(chunk, bytes.length - i)));
+                } else {
+                    feeder.endOfInput();
+                }
+                JsonTokenizer.Token token;
+                while ((token = feeder.nextToken()) != JsonTokenizer.Token.NEED_MORE_INPUT && token != null) {
+                    actual.add(token + " " + feeder.currentDepth() + " " + feeder.currentKey() + " "
+                            + (token == JsonTokenizer.Token.NUMBER || token == JsonTokenizer.Token.STRING
+                            ? feeder.getText() : ""));
+                }
+                if (token == JsonTokenizer.Token.NEED_MORE_INPUT) {
+                    needMore++;
+                }
+            }
+            assertEquals(expected, actual);
+            assertTrue(needMore > 0);
+        }
+
+        var feeder = JsonStream.builder().concatenated(true).feeder();
+        feeder.feed(ByteBuffer.wrap("[1] [2".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(JsonTokenizer.Token.START_ARRAY, feeder.nextToken());
+        assertEquals(JsonTokenizer.Token.NUMBER, feeder.nextToken());
+        assertEquals(JsonTokenizer.Token.END_ARRAY, feeder.nextToken());
+        assertEquals(JsonTokenizer.Token.START_ARRAY, feeder.nextToken());
+        assertEquals(JsonTokenizer.Token.NEED_MORE_INPUT, feeder.nextToken());
+        feeder.endOfInput();
+        assertEquals(JsonTokenizer.Token.NUMBER, feeder.nextToken());
+        assertEquals(2, feeder.getLong());
+        assertThrows(IllegalStateException.class, feeder::nextToken);
+    }
+
+    @Test
+    public void publishNodes() throws InterruptedException {
+        String json = "[" + String.join(",", Collections.nCopies(100, TEST_JSON)) + "]";
+        List<String> expected = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 2)
+                .map(JsonStream.Node::getValue)
+                .toList();
+        var closed = new CountDownLatch(1);
+        var nodes = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 2)
+                .onClose(closed::countDown);
+        var received = Collections.synchronizedList(new ArrayList<String>());
+        var done = new CountDownLatch(1);
+        var maxOutstanding = new AtomicInteger();
+        JsonStream.publisher(nodes).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            private final AtomicInteger outstanding = new AtomicInteger();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                outstanding.set(3);
+                subscription.request(3);
+            }
+
+            @Override
+            public void onNext(JsonStream.Node item) {
+                maxOutstanding.accumulateAndGet(3 - outstanding.decrementAndGet(), Math::max);
+                received.add(item.getValue());
+                if (outstanding.get() == 0) {
+                    outstanding.set(3);
+                    subscription.request(3);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        assertEquals(expected, received);
+        assertTrue(maxOutstanding.get() <= 3);
+
+        var cancelled = new CountDownLatch(1);
+        var count = new AtomicInteger();
+        var publisher = JsonStream.publisher(JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 2)
+                .onClose(cancelled::countDown), Runnable::run);
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(JsonStream.Node item) {
+                if (count.incrementAndGet() == 5) {
+                    subscription.cancel();
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertEquals(5, count.get());
+        assertEquals(0, cancelled.getCount());
+    }
+
+    @Test
+    public void mapInParallel() {
+        String json = "[" + String.join(",", Collections.nCopies(200, TEST_JSON)) + "]";
+        List<String> expected = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 3)
+                .map(node -> node.getValue().toUpperCase())
+                .toList();
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var closed = new AtomicInteger();
+        var nodes = JsonStream.jsonStream(new StringReader(json)).onClose(closed::incrementAndGet);
+        try (var mapped = JsonStream.parallelMap(nodes, node -> node.getNodeData().size() == 3, node -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(node.getValue().length() % 3);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                running.decrementAndGet();
+                return node.getValue().toUpperCase();
+            }, 4, true)) {
+            assertEquals(expected, mapped.toList());
+        }
+        assertEquals(1, closed.get());
+        assertTrue(maxRunning.get() <= 4);
+
+        try (var unordered = JsonStream.jsonStream(new StringReader(json));
+             var mapped = JsonStream.parallelMap(unordered, node -> node.getNodeData().size() == 3,
+                     node -> node.getValue().toUpperCase(), 3, false)) {
+            assertEquals(expected.stream().sorted().toList(), mapped.sorted().toList());
+        }
+        try (var failing = JsonStream.jsonStream(new StringReader(json));
+             var mapped = JsonStream.parallelMap(failing, node -> node.getNodeData().size() == 3, node -> {
+                 throw new IllegalArgumentException("Bad node");
+             }, 2, true)) {
+            assertThrows(IllegalArgumentException.class, mapped::count);
+        }
+        assertThrows(IllegalArgumentException.class, () -> JsonStream.parallelMap(
+                JsonStream.jsonStream(new StringReader(json)), node -> true, JsonStream.Node::getValue, 0, true));
+    }
+
+    @Test
+    public void readAheadInBackground() throws IOException {
+        String json = "[" + String.join(",", Collections.nCopies(500, TEST_JSON)) + "]";
+        List<String> expected = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 3)
+                .map(JsonStream.Node::getValue)
+                .toList();
+        var gzipped = new ByteArrayOutputStream();
+        try (var out = new GZIPOutputStream(gzipped)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        var builder = JsonStream.builder().readAhead(true);
+        for (var charset : List.of(StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1)) {
+            try (var input = new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()));
+                 var stream = builder.stream(input, charset)) {
+                List<String> actual = stream
+                        .filter(node -> node.getNodeData().size() == 3)
+                        .map(JsonStream.Node::getValue)
+                        .toList();
+                assertEquals(expected, actual);
+            }
+        }
+        try (var stream = builder.stream(new StringReader(json))) {
+            assertEquals(expected, stream
+                    .filter(node -> node.getNodeData().size() == 3)
+                    .map(JsonStream.Node::getValue)
+                    .toList());
+        }
+        try (var stream = builder.stream(new StringReader(json))) {
+            assertEquals(5, stream.limit(5).count());
+        }
+
+        var failing = new java.io.InputStream() {
+            private int left = 100_000;
+
+            @Override
+            public int read() throws IOException {
+                if (left-- <= 0) {
+                    throw new IOException("Broken");
+                }
+                return left == 99_999 ? '[' : ' ';
+            }
+        };
+        try (var stream = builder.stream(failing, StandardCharsets.UTF_8)) {
+            assertThrows(RuntimeException.class, stream::count);
+        }
+
+        var inRead = new AtomicBoolean();
+        var interrupted = new AtomicBoolean();
+        var blocking = new java.io.InputStream() {
+            private boolean served = false;
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte @NotNull [] bytes, int offset, int length) throws IOException {
+                if (!served) {
+                    served = true;
+                    bytes[offset] = '[';
+                    return 1;
+                }
+                inRead.set(true);
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                    return -1;
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    throw new InterruptedIOException();
+                } finally {
+                    inRead.set(false);
+                }
+            }
+        };
+        try (var stream = builder.stream(blocking, StandardCharsets.UTF_8)) {
+            assertEquals(1, stream.limit(1).count());
+            while (!inRead.get()) {
+                Thread.onSpinWait();
+            }
+        }
+        assertTrue(interrupted.get());
+        assertFalse(inRead.get());
+    }
+
+    @Test
+    public void skipValuesWithStructuralIndex() {
+        String json = "[" + String.join(",", Collections.nCopies(300, TEST_JSON)) + "]";
+        List<String> expected = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().stream().noneMatch(data -> data.name().equals("friends"))
+                        || node.leaf().name().equals("friends"))
+                .map(node -> node.leaf().name())
+                .toList();
+        long objects = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 3)
+                .count();
+        long names = JsonStream.jsonStream(new StringReader(json))
+                .filter(node -> node.getNodeData().size() == 4 && node.leaf().name().equals("name"))
+                .count();
+        for (boolean structuralIndex : new boolean[]{false, true}) {
+            Spliterator<JsonStream.Node> spliterator = JsonStream.builder()
+                    .structuralIndex(structuralIndex)
+                    .spliterator(json.getBytes(StandardCharsets.UTF_8));
+            List<String> actual = new ArrayList<>();
+            //noinspection StatementWithEmptyBody
+            while (spliterator.tryAdvance(node -> {
+                actual.add(node.leaf().name());
+                if (node.leaf().name().equals("friends")) {
+                    node.skip();
+                }
+            })) ;
+            assertEquals(expected, actual);
+
+            try (var stream = JsonStream.builder().structuralIndex(structuralIndex).select("$[*][*].name")
+                    .stream(json.getBytes(StandardCharsets.UTF_8))) {
+                assertEquals(names, stream.count());
+            }
+            try (var stream = JsonStream.builder().structuralIndex(structuralIndex)
+                    .stream(json.getBytes(StandardCharsets.UTF_8))) {
+                assertEquals(objects, stream.filter(node -> node.getNodeData().size() == 3)
+                        .mapToLong(node -> node.children().limit(1).count())
+                        .sum());
+            }
+        }
+    }
+
+    @Test
+    public void readJsonLinesInParallel() {
+        var json = new StringBuilder();
+        var expected = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            json.append("{\"id\": ").append(i).append(", \"tags\": [\"a\", \"b\"], \"next\": {\"id\": null}}\n");
+            expected.add(Integer.toString(i));
+        }
+        json.append("\n42");
+        expected.add("42");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        assertNotNull(JsonStream.builder().jsonLines(true).spliterator(bytes).trySplit());
+        try (Stream<JsonStream.Node> stream = JsonStream.builder().jsonLines(true).stream(bytes)) {
+            List<String> actual = stream.parallel()
+                    .filter(node -> node.getNodeData().size() == 1 && node.leaf().type() == JsonStream.NodeType.NUMBER
+                            || node.getNodeData().size() == 2 && node.leaf().name().equals("id"))
+                    .map(JsonStream.Node::getValue)
+                    .toList();
+            assertEquals(expected, actual);
+        }
+        try (Stream<JsonStream.Node> stream = JsonStream.builder().jsonLines(true).stream(bytes)) {
+            List<Long> indexes = stream.parallel()
+                    .filter(node -> node.getNodeData().size() == 1)
+                    .map(JsonStream.Node::documentIndex)
+                    .toList();
+            assertEquals(LongStream.rangeClosed(0, 5000).boxed().toList(), indexes);
+        }
+    }
+
+    @Test
+    public void readConcatenatedDocuments() {
+        String json = "{\"a\": [1, 2]}{\"a\": \"b\"} 3\n-4 \"five\"[true]null";
+        List<String> actual = JsonStream.builder().concatenated(true)
+                .stream(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)
+                .filter(node -> node.getNodeData().size() == 1)
+                .map(node -> node.documentIndex() + ":" + node.getValue())
+                .toList();
+        assertEquals(List.of("0:{\"a\": [1, 2]}", "1:{\"a\": \"b\"}", "2:3", "3:-4", "4:\"five\"", "5:[true]", "6:null"),
+                actual);
+
+        List<JsonStream.Node> nodes = JsonStream.builder().jsonLines(true)
+                .stream(new StringReader("[1]\n\n{\"a\": {\"b\": 2}}\n"))
+                .filter(node -> node.leaf().type() == JsonStream.NodeType.NUMBER)
+                .map(JsonStream.Node::fetchFull)
+                .toList();
+        assertEquals(2, nodes.size());
+        assertEquals(0, nodes.get(0).documentIndex());
+        assertEquals(1, nodes.get(1).documentIndex());
+        assertEquals("2", nodes.get(1).getValue());
+
+        assertEquals(0, JsonStream.jsonStream(new StringReader("[[1]]")).map(JsonStream.Node::documentIndex)
+                .filter(index -> index != 0).count());
+        assertEquals(List.of("0", "1"), JsonStream.builder().splitArray("a").stream(new StringReader("{\"a\": [1, 2]}"))
+                .map(node -> node.leaf().name()).toList());
+    }
+
+    @Test
+    public void selectByJsonPath() {
+        String json = "{\"metadata\": {\"id\": 0, \"data\": [{\"id\": -1}]}, \"data\": ["
+                + "{\"id\": 1, \"junk\": {\"id\": 10}}, {\"id\": 2, \"list\": [3, 4]}, {\"id\": 5}], \"a b\": [6]}";
+        assertEquals(List.of("1", "2", "5"), select(json, "$.data[*].id"));
+        assertEquals(List.of("1", "5"), select(json, "$['data'][0,2]['id']"));
+        assertEquals(List.of("2"), select(json, "data[1:2].id"));
+        assertEquals(List.of("0", "-1", "1", "10", "2", "5"), select(json, "$..id"));
+        assertEquals(List.of("3", "4"), select(json, "$..list..*"));
+        assertEquals(List.of("[6]"), select(json, "$['a b']"));
+        assertEquals(List.of(json), select(json, "$"));
+        assertEquals(List.of(), select(json, "$.data.id"));
+
+        var names = new ArrayList<String>();
+        JsonStream.select(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "$.data[*]")
+                .forEach(node -> names.add(node.leaf().name()));
+        assertEquals(List.of("0", "1", "2"), names);
+
+        assertThrows(IllegalArgumentException.class, () -> JsonStream.builder().select("$.data[?(@.id)]"));
+        assertThrows(IllegalArgumentException.class, () -> JsonStream.builder().select("$.data[-1]"));
+        assertThrows(IllegalArgumentException.class, () -> JsonStream.builder().select("$.data.length()"));
+        var step = assertThrows(IllegalArgumentException.class, () -> JsonStream.builder().select("$.data[0:10:2]"));
+        assertTrue(step.getMessage(), step.getMessage().contains("slice steps"));
+        var malformed = assertThrows(IllegalArgumentException.class,
+                () -> JsonStream.builder().select("$.data[1:2:3:4]"));
+        assertTrue(malformed.getMessage(), malformed.getMessage().contains("$.data[1:2:3:4]"));
+    }
+
+    private static List<String> select(String json, String jsonPath) {
+        return JsonStream.select(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), jsonPath)
+                .map(JsonStream.Node::getValue)
+                .toList();
+    }
+
+    @Test
+    public void splitArrayInParallel() {
+        var json = new StringBuilder("{\"metadata\": {\"data\": [0]}, \"data\": [");
+        for (int i = 0; i < 60000; i++) {
+            if (i > 0) {
+                json.append(i % 7 == 0 ? ",\n" : ", ");
+            }
+            json.append(i % 5 == 0 ? i : "{\"id\": " + i + ", \"text\": \"},{ \\\" [ \\\\\", \"nested\": [1, {\"b\": []}]}");
+        }
+        json.append("], \"after\": [1]}");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        List<String> expected = JsonStream.jsonStream(new StringReader(json.toString()))
+                .filter(node -> node.getNodeData().size() > 2 && node.getNodeData().get(1).name().equals("data"))
+                .map(node -> node.getNodeData().stream().map(JsonStream.NodeData::name).toList() + node.getValue())
+                .toList();
+
+        try (Stream<JsonStream.Node> stream = JsonStream.builder().splitArray("data").stream(bytes)) {
+            List<String> actual = stream.parallel()
+                    .map(node -> node.getNodeData().stream().map(JsonStream.NodeData::name).toList() + node.getValue())
+                    .toList();
+            assertEquals(expected, actual);
+        }
+        assertNotNull(JsonStream.builder().splitArray("data").spliterator(bytes).trySplit());
+    }
 }